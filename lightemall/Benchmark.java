@@ -0,0 +1,14 @@
+import java.util.Random;
+
+// one operation measured by the benchmark harness, on boards of any size
+interface Benchmark {
+  // the name the operation is reported and selected by
+  String name();
+
+  // prepares a board of the given size, outside of the measurement
+  void setUp(int width, int height, Random rand);
+
+  // runs the operation once, returning what it made or changed so the work
+  // cannot be thrown away as unused
+  Object run();
+}
@@ -0,0 +1,40 @@
+// what was measured for one operation on one size of board
+class BenchmarkResult {
+  String name;
+  int width;
+  int height;
+  // the time taken by every measured operation
+  LatencyHistogram latency;
+  // the time taken by all of them together
+  long nanos;
+  // the bytes allocated by every live thread, or -1 if the JVM cannot tell
+  long allocated;
+  // the garbage collections that ran while measuring, and how long they took
+  long collections;
+  long collectionMillis;
+
+  BenchmarkResult(String name, int width, int height) {
+    this.name = name;
+    this.width = width;
+    this.height = height;
+    this.latency = new LatencyHistogram();
+  }
+
+  // the number of operations per second
+  double throughput() {
+    return this.nanos == 0 ? 0 : this.latency.count * 1e9 / this.nanos;
+  }
+
+  // the bytes allocated by every operation, on average, or -1 if unknown
+  long allocatedPerOp() {
+    return this.allocated < 0 || this.latency.count == 0 ? -1
+        : this.allocated / this.latency.count;
+  }
+
+  // a one line report
+  String summary() {
+    return String.format("%-15s %5dx%-5d %12.1f ops/s  %s  alloc=%dB/op  gc=%d (%dms)",
+        this.name, this.width, this.height, this.throughput(), this.latency.summary(),
+        this.allocatedPerOp(), this.collections, this.collectionMillis);
+  }
+}
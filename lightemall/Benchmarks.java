@@ -0,0 +1,371 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import javalib.worldimages.Posn;
+
+// building a whole new game, from the empty board to the scrambled tiles
+class ConstructBenchmark implements Benchmark {
+  int width;
+  int height;
+  Random rand;
+
+  public String name() {
+    return "construct";
+  }
+
+  public void setUp(int width, int height, Random rand) {
+    this.width = width;
+    this.height = height;
+    this.rand = rand;
+  }
+
+  public Object run() {
+    return new LightEmAll(this.width, this.height, this.rand);
+  }
+}
+
+// one of the steps a new game is built in, run again and again on the same
+// board
+class PhaseBenchmark implements Benchmark {
+  // makeBoard, generateEdge, kruskal, boardK or randomize
+  String phase;
+  LightEmAll game;
+
+  PhaseBenchmark(String phase) {
+    this.phase = phase;
+  }
+
+  public String name() {
+    return this.phase;
+  }
+
+  public void setUp(int width, int height, Random rand) {
+    this.game = new LightEmAll(width, height);
+    this.game.rand = rand;
+    this.game.kruskal();
+    this.game.boardK();
+  }
+
+  public Object run() {
+    if (this.phase.equals("makeBoard")) {
+      return this.game.makeBoard();
+    }
+    else if (this.phase.equals("generateEdge")) {
+      this.game.generateEdge();
+      return this.game.edgeFrom;
+    }
+    else if (this.phase.equals("kruskal")) {
+      return this.game.kruskal();
+    }
+    else if (this.phase.equals("boardK")) {
+      this.game.boardK();
+      return this.game.board;
+    }
+    else {
+      this.game.randomize();
+      return this.game.board;
+    }
+  }
+}
+
+// a batch of boards made on every core, one per seed
+class BatchBenchmark implements Benchmark {
+  BoardBatch batch;
+  long seed;
+
+  public String name() {
+    return "batch";
+  }
+
+  public void setUp(int width, int height, Random rand) {
+    this.batch = new BoardBatch(width, height, ForkJoinPool.commonPool());
+    this.seed = rand.nextLong();
+  }
+
+  public Object run() {
+    CollectingSink sink = new CollectingSink();
+    this.batch.generate(this.seed, 16, sink);
+    this.seed += 16;
+    return sink;
+  }
+}
+
+// lighting the whole board from the power station
+class PropagateBenchmark implements Benchmark {
+  LightEmAll game;
+
+  public String name() {
+    return "propagateLight";
+  }
+
+  public void setUp(int width, int height, Random rand) {
+    this.game = new LightEmAll(width, height, rand);
+  }
+
+  public Object run() {
+    this.game.propagateLight();
+    return this.game.core.power;
+  }
+}
+
+// a click on a random tile in view, once the board has been lit
+class ClickBenchmark implements Benchmark {
+  LightEmAll game;
+  Random rand;
+  int right;
+  int bottom;
+
+  public String name() {
+    return "onMouseClicked";
+  }
+
+  public void setUp(int width, int height, Random rand) {
+    this.game = new LightEmAll(width, height, rand);
+    this.game.propagateLight();
+    this.rand = rand;
+    this.right = Math.min(this.game.camera.viewWidth, width * this.game.camera.tileSize);
+    this.bottom = Math.min(this.game.camera.viewHeight, height * this.game.camera.tileSize);
+  }
+
+  public Object run() {
+    this.game.onMouseClicked(new Posn(this.rand.nextInt(this.right),
+        this.rand.nextInt(this.bottom)));
+    return this.game.core.power;
+  }
+}
+
+// a rotation of a random tile on a packed board, without a world or images
+class CoreBenchmark implements Benchmark {
+  GameCore core;
+  Random rand;
+
+  public String name() {
+    return "coreRotate";
+  }
+
+  public void setUp(int width, int height, Random rand) {
+    this.core = GameCore.generate(width, height, rand, new KruskalGenerator());
+    this.core.relight();
+    this.rand = rand;
+  }
+
+  public Object run() {
+    this.core.rotate(this.rand.nextInt(this.core.power.size()));
+    return this.core.power;
+  }
+}
+
+// solving a scrambled board from scratch
+class SolveBenchmark implements Benchmark {
+  GameCore core;
+
+  public String name() {
+    return "solve";
+  }
+
+  public void setUp(int width, int height, Random rand) {
+    this.core = GameCore.generate(width, height, rand, new KruskalGenerator());
+  }
+
+  public Object run() {
+    Solver solver = new Solver(this.core.grid);
+    solver.solve();
+    return solver;
+  }
+}
+
+// solving a scrambled board with the stripes narrowed on a pool of the given
+// number of threads first, so runs on 1, 2, 4 and 8 threads show how it
+// scales with cores
+class ParallelSolveBenchmark implements Benchmark {
+  int threads;
+  ForkJoinPool pool;
+  GameCore core;
+
+  ParallelSolveBenchmark(int threads) {
+    this.threads = threads;
+  }
+
+  public String name() {
+    return "parallelSolve" + this.threads;
+  }
+
+  public void setUp(int width, int height, Random rand) {
+    if (this.pool == null) {
+      this.pool = new ForkJoinPool(this.threads);
+    }
+    this.core = GameCore.generate(width, height, rand, new KruskalGenerator());
+  }
+
+  public Object run() {
+    ParallelSolver solver = new ParallelSolver(this.core.grid, this.pool);
+    solver.solve();
+    return solver;
+  }
+}
+
+// drawing one frame of the game
+class SceneBenchmark implements Benchmark {
+  LightEmAll game;
+
+  public String name() {
+    return "makeScene";
+  }
+
+  public void setUp(int width, int height, Random rand) {
+    this.game = new LightEmAll(width, height, rand);
+  }
+
+  public Object run() {
+    return this.game.makeScene();
+  }
+}
+
+// measures the hot paths of the game on boards of different sizes, printing
+// throughput, latency percentiles, allocation per operation and the garbage
+// collections every operation caused
+// run without a window, with javalib and tester on the class path:
+// java Benchmarks [-sizes 8x8,2000x2000] [-only kruskal,makeScene]
+// [-warmup millis] [-time millis]
+// this is the quick check in one JVM; gradle jmh measures the same
+// operations with JMH in forked JVMs (see build.gradle)
+class Benchmarks {
+  // how long every operation is run before and while it is measured
+  long warmupNanos;
+  long measureNanos;
+  // the most operations measured at a time, so fast ones stop early
+  long maxOps;
+  // what the last operation returned, kept so its work is not thrown away
+  Object last;
+
+  Benchmarks(long warmupMillis, long measureMillis) {
+    this.warmupNanos = warmupMillis * 1000000L;
+    this.measureNanos = measureMillis * 1000000L;
+    this.maxOps = 1000000;
+  }
+
+  // every operation the harness knows about
+  static ArrayList<Benchmark> all() {
+    ArrayList<Benchmark> all = new ArrayList<Benchmark>();
+    all.add(new ConstructBenchmark());
+    all.add(new PhaseBenchmark("makeBoard"));
+    all.add(new PhaseBenchmark("generateEdge"));
+    all.add(new PhaseBenchmark("kruskal"));
+    all.add(new PhaseBenchmark("boardK"));
+    all.add(new PhaseBenchmark("randomize"));
+    all.add(new BatchBenchmark());
+    all.add(new PropagateBenchmark());
+    all.add(new ClickBenchmark());
+    all.add(new CoreBenchmark());
+    all.add(new SolveBenchmark());
+    for (int threads = 1; threads <= 8; threads *= 2) {
+      all.add(new ParallelSolveBenchmark(threads));
+    }
+    all.add(new SceneBenchmark());
+    return all;
+  }
+
+  // warms up and then measures the given operation on a board of the given
+  // size; every operation runs at least once in each stage
+  BenchmarkResult measure(Benchmark bench, int width, int height, Random rand) {
+    BenchmarkResult result = new BenchmarkResult(bench.name(), width, height);
+    bench.setUp(width, height, rand);
+    long start = System.nanoTime();
+    do {
+      this.last = bench.run();
+    } while (System.nanoTime() - start < this.warmupNanos);
+    long allocatedBefore = allocatedBytes();
+    long collectionsBefore = collections();
+    long collectionMillisBefore = collectionMillis();
+    start = System.nanoTime();
+    long end = start;
+    do {
+      long before = end;
+      this.last = bench.run();
+      end = System.nanoTime();
+      result.latency.record(end - before);
+    } while (end - start < this.measureNanos && result.latency.count < this.maxOps);
+    result.nanos = end - start;
+    long allocatedAfter = allocatedBytes();
+    result.allocated = allocatedBefore < 0 ? -1 : allocatedAfter - allocatedBefore;
+    result.collections = collections() - collectionsBefore;
+    result.collectionMillis = collectionMillis() - collectionMillisBefore;
+    return result;
+  }
+
+  // the number of bytes every live thread has allocated so far, or -1 if the
+  // JVM does not keep count; work handed to the pool threads of batch and
+  // parallelSolve is counted with the rest, but a thread that ends while an
+  // operation is measured takes its count with it, so gradle jmh, whose gc
+  // profiler counts the whole JVM, is the one to trust for those
+  static long allocatedBytes() {
+    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      long total = 0;
+      for (long bytes : ((com.sun.management.ThreadMXBean) threads)
+          .getThreadAllocatedBytes(threads.getAllThreadIds())) {
+        total += Math.max(0, bytes);
+      }
+      return total;
+    }
+    return -1;
+  }
+
+  // the number of garbage collections so far, and the time they took
+  static long collections() {
+    long count = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, gc.getCollectionCount());
+    }
+    return count;
+  }
+
+  static long collectionMillis() {
+    long millis = 0;
+    for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+      millis += Math.max(0, gc.getCollectionTime());
+    }
+    return millis;
+  }
+
+  public static void main(String[] args) {
+    System.setProperty("java.awt.headless", "true");
+    String sizes = "8x8,32x32,128x128,500x500,2000x2000";
+    String only = "";
+    long warmup = 1000;
+    long time = 2000;
+    for (int i = 0; i + 1 < args.length; i += 2) {
+      if (args[i].equals("-sizes")) {
+        sizes = args[i + 1];
+      }
+      else if (args[i].equals("-only")) {
+        only = "," + args[i + 1] + ",";
+      }
+      else if (args[i].equals("-warmup")) {
+        warmup = Long.parseLong(args[i + 1]);
+      }
+      else if (args[i].equals("-time")) {
+        time = Long.parseLong(args[i + 1]);
+      }
+    }
+    Benchmarks harness = new Benchmarks(warmup, time);
+    for (String size : sizes.split(",")) {
+      int width = Integer.parseInt(size.substring(0, size.indexOf('x')));
+      int height = Integer.parseInt(size.substring(size.indexOf('x') + 1));
+      for (Benchmark bench : all()) {
+        if (!only.isEmpty() && !only.contains("," + bench.name() + ",")) {
+          continue;
+        }
+        try {
+          System.out.println(harness.measure(bench, width, height, new Random(42)).summary());
+        }
+        catch (OutOfMemoryError e) {
+          System.out.println(bench.name() + " " + size + " skipped: out of memory");
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,80 @@
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+// generates many scrambled boards of one size at once, one per seed, on
+// every worker of a pool
+// every board is made from a Random of its own seed, exactly the way
+// new LightEmAll(width, height, new Random(seed)) makes it, so a seed gives
+// the same board however many workers there are and whichever one takes it
+// every worker keeps its own board, edge arrays and generator between seeds,
+// so a batch only allocates once per worker
+class BoardBatch {
+  int width;
+  int height;
+  ForkJoinPool pool;
+  // the next seed waiting for a worker, and one past the last one
+  AtomicLong next;
+  long end;
+  // where finished boards go; only one worker hands it a board at a time
+  BoardSink sink;
+
+  BoardBatch(int width, int height, ForkJoinPool pool) {
+    this.width = width;
+    this.height = height;
+    this.pool = pool;
+  }
+
+  // makes the boards for the given number of seeds, starting at the first
+  // one, handing each to the given sink in no particular order
+  void generate(long first, int count, BoardSink sink) {
+    this.next = new AtomicLong(first);
+    this.end = first + count;
+    this.sink = sink;
+    int workers = Math.max(1, Math.min(count, this.pool.getParallelism()));
+    this.pool.invoke(new BatchWorkers(this, 0, workers));
+  }
+
+  // takes seeds until there are none left, making their boards in the same
+  // scratch space
+  void work() {
+    PackedBoard board = new PackedBoard(this.width, this.height);
+    int[] from = new int[this.width * this.height - 1];
+    int[] to = new int[this.width * this.height - 1];
+    KruskalGenerator generator = new KruskalGenerator();
+    for (long seed = this.next.getAndIncrement(); seed < this.end;
+        seed = this.next.getAndIncrement()) {
+      board.regenerate(new Random(seed), generator, from, to);
+      synchronized (this.sink) {
+        this.sink.board(seed, board);
+      }
+    }
+  }
+}
+
+// starts the workers of a batch, splitting them between the threads of the
+// pool
+class BatchWorkers extends RecursiveAction {
+  private static final long serialVersionUID = 1L;
+
+  BoardBatch batch;
+  int from;
+  int to;
+
+  BatchWorkers(BoardBatch batch, int from, int to) {
+    this.batch = batch;
+    this.from = from;
+    this.to = to;
+  }
+
+  protected void compute() {
+    if (this.to - this.from == 1) {
+      this.batch.work();
+      return;
+    }
+    int middle = (this.from + this.to) / 2;
+    invokeAll(new BatchWorkers(this.batch, this.from, middle),
+        new BatchWorkers(this.batch, middle, this.to));
+  }
+}
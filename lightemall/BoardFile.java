@@ -0,0 +1,75 @@
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Random;
+
+// the file format of a saved board: a header of eight big-endian fields,
+// then the connectors of every tile as NibbleRowWriter writes them, row
+// after row from the top, two tiles per byte
+// the header is the magic number, the width, the height, the index of the
+// tile holding the power station, the seed the board was made from (0 if it
+// is not known), the number of clicks so far and the clock
+class BoardFile {
+  // "LEA1"
+  static final int MAGIC = 0x4C454131;
+  // where every field of the header starts, and the size of the header
+  static final int WIDTH = 4;
+  static final int HEIGHT = 8;
+  static final int STATION = 12;
+  static final int SEED = 16;
+  static final int CLICKS = 24;
+  static final int TIME = 28;
+  static final int HEADER = 32;
+
+  // the number of bytes a board of the given size takes
+  static long size(int width, int height) {
+    return HEADER + ((long) width * height + 1) / 2;
+  }
+
+  // writes the given board to the given stream
+  static void write(TileGrid grid, int station, long seed, int clicks, int time,
+      OutputStream out) {
+    int width = grid.width();
+    int height = grid.height();
+    writeHeader(width, height, station, seed, clicks, time, out);
+    NibbleRowWriter writer = new NibbleRowWriter(out);
+    byte[] row = new byte[width];
+    for (int r = 0; r < height; r++) {
+      for (int c = 0; c < width; c++) {
+        row[c] = (byte) grid.mask(c * height + r);
+      }
+      writer.row(r, row);
+    }
+    writer.finish();
+  }
+
+  // writes a new scrambled board of the given size straight to the given
+  // stream, one row at a time, without ever holding the whole board
+  static void stream(int width, int height, long seed, OutputStream out) {
+    writeHeader(width, height, 0, seed, 0, 0, out);
+    NibbleRowWriter writer = new NibbleRowWriter(out);
+    Random rand = new Random(seed);
+    new EllerGenerator().stream(width, height, rand, new ScramblingSink(writer, rand));
+    writer.finish();
+  }
+
+  // writes the header of a board to the given stream
+  static void writeHeader(int width, int height, int station, long seed, int clicks, int time,
+      OutputStream out) {
+    try {
+      DataOutputStream data = new DataOutputStream(out);
+      data.writeInt(MAGIC);
+      data.writeInt(width);
+      data.writeInt(height);
+      data.writeInt(station);
+      data.writeLong(seed);
+      data.writeInt(clicks);
+      data.writeInt(time);
+      data.flush();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
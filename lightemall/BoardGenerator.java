@@ -0,0 +1,8 @@
+import java.util.Random;
+
+// makes the spanning tree that a new board is wired from
+interface BoardGenerator {
+  // fills from and to with the width * height - 1 edges of a spanning tree
+  // over the tiles, as pairs of adjacent tile indices (col * height + row)
+  void spanningTree(int width, int height, Random rand, int[] from, int[] to);
+}
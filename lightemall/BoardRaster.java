@@ -0,0 +1,251 @@
+import java.awt.Color;
+import javalib.worldimages.*;
+
+// a retained picture of the part of the board the camera shows, where only
+// tiles whose look changed since the last frame are drawn again
+// a tile's look is its connectors, plus 16 if it is lit and 32 if it holds the
+// power station; in radius mode, lit means in reach, and 64 times the shade
+// of a tile in reach is added on top
+class BoardRaster {
+  // the look of a tile that has never been drawn
+  static final byte UNDRAWN = -1;
+  // what is shown where the board ends
+  static final Color NOTHING = new Color(0, 0, 0, 0);
+
+  int width;
+  int height;
+  Camera camera;
+  // the picture of the view
+  ComputedPixelImage image;
+  // the tile size the looks were painted for
+  int tileSize;
+  // the pixels of every look, row by row
+  Color[][] looks;
+  // the look every visible tile was last drawn with
+  byte[] drawn;
+  // the tiles that may have changed since the last frame
+  int[] dirty;
+  boolean[] isDirty;
+  int dirtyCount;
+  // whether the camera moved since the last frame
+  boolean moved;
+  // the powered counts shown when zoomed out past single tiles, and the color
+  // of every sixteenth of a block being powered
+  PowerPyramid pyramid;
+  Color[] shades;
+  // how far power reaches in radius mode, or null
+  PowerRadius reach;
+
+  BoardRaster(int width, int height, Camera camera, PowerPyramid pyramid) {
+    this.width = width;
+    this.height = height;
+    this.camera = camera;
+    this.pyramid = pyramid;
+    this.shades = new Color[17];
+    for (int i = 0; i <= 16; i++) {
+      this.shades[i] = new Color(64 + (255 - 64) * i / 16, 64 + (255 - 64) * i / 16,
+          64 - 64 * i / 16);
+    }
+    this.image = new ComputedPixelImage(camera.viewWidth, camera.viewHeight);
+    this.tileSize = 0;
+    this.drawn = new byte[width * height];
+    this.dirty = new int[width * height];
+    this.isDirty = new boolean[width * height];
+    this.dirtyCount = 0;
+    this.moved = true;
+  }
+
+  // the look of the tile at the given index
+  static int lookOf(TileGrid grid, int index) {
+    return grid.mask(index) | (grid.isPowered(index) || grid.isStation(index) ? 16 : 0)
+        | (grid.isStation(index) ? 32 : 0);
+  }
+
+  // the look of the tile at the given index, shaded by its distance from the
+  // power station in radius mode
+  int look(TileGrid grid, int index) {
+    if (this.reach == null) {
+      return lookOf(grid, index);
+    }
+    int look = grid.mask(index) | (grid.isStation(index) ? 32 : 0);
+    if (this.reach.inReach(index)) {
+      look |= 16 | this.reach.shade(index) << 6;
+    }
+    return look;
+  }
+
+  // notes that the tile at the given index may look different now
+  void markDirty(int index) {
+    if (!this.isDirty[index]) {
+      this.isDirty[index] = true;
+      this.dirty[this.dirtyCount++] = index;
+    }
+  }
+
+  // notes that every tile has to be drawn again, such as after the camera
+  // moved
+  void markAll() {
+    this.moved = true;
+  }
+
+  // draws the dirty tiles of the given board that are in view and whose look
+  // actually changed, returning how many were drawn
+  // after the camera moved, every tile in view is drawn
+  int flush(TileGrid grid) {
+    if (this.moved) {
+      return this.redrawView(grid);
+    }
+    int redrawn = 0;
+    for (int i = 0; i < this.dirtyCount; i++) {
+      int index = this.dirty[i];
+      this.isDirty[index] = false;
+      if (this.camera.lod()) {
+        if (this.visible(index)) {
+          int level = this.camera.level;
+          this.drawBlock(grid, index / this.height >> level, index % this.height >> level);
+          redrawn += 1;
+        }
+        continue;
+      }
+      int look = this.look(grid, index);
+      if (this.visible(index) && this.drawn[index] != (byte) look) {
+        this.drawTile(index, look);
+        this.drawn[index] = (byte) look;
+        redrawn += 1;
+      }
+    }
+    this.dirtyCount = 0;
+    return redrawn;
+  }
+
+  // clears the view and draws every tile in it, returning how many were drawn
+  int redrawView(TileGrid grid) {
+    for (int i = 0; i < this.dirtyCount; i++) {
+      this.isDirty[this.dirty[i]] = false;
+    }
+    this.dirtyCount = 0;
+    this.moved = false;
+    for (int y = 0; y < this.camera.viewHeight; y++) {
+      for (int x = 0; x < this.camera.viewWidth; x++) {
+        this.image.setPixel(x, y, NOTHING);
+      }
+    }
+    int redrawn = 0;
+    if (this.camera.lod()) {
+      int level = this.camera.level;
+      for (int bc = this.camera.firstCol() >> level; bc <= this.camera.lastCol() >> level; bc++) {
+        for (int br = this.camera.firstRow() >> level; br <= this.camera.lastRow() >> level;
+            br++) {
+          this.drawBlock(grid, bc, br);
+          redrawn += 1;
+        }
+      }
+      return redrawn;
+    }
+    if (this.tileSize != this.camera.tileSize) {
+      this.tileSize = this.camera.tileSize;
+      // the shaded looks of radius mode are only painted once they are drawn
+      this.looks = new Color[64 * PowerRadius.SHADES][];
+      for (int look = 0; look < 64; look++) {
+        this.looks[look] = this.paint(look);
+      }
+    }
+    for (int c = this.camera.firstCol(); c <= this.camera.lastCol(); c++) {
+      for (int r = this.camera.firstRow(); r <= this.camera.lastRow(); r++) {
+        int index = c * this.height + r;
+        int look = this.look(grid, index);
+        this.drawTile(index, look);
+        this.drawn[index] = (byte) look;
+        redrawn += 1;
+      }
+    }
+    return redrawn;
+  }
+
+  // is the tile at the given index at least partly in view?
+  boolean visible(int index) {
+    int c = index / this.height;
+    int r = index % this.height;
+    return c >= this.camera.firstCol() && c <= this.camera.lastCol()
+        && r >= this.camera.firstRow() && r <= this.camera.lastRow();
+  }
+
+  // copies the pixels of the given look onto the tile at the given index,
+  // leaving out whatever is outside of the view
+  void drawTile(int index, int look) {
+    if (this.looks[look] == null) {
+      this.looks[look] = this.paint(look);
+    }
+    Color[] pixels = this.looks[look];
+    int left = this.camera.screenX(index / this.height);
+    int top = this.camera.screenY(index % this.height);
+    int fromX = Math.max(0, -left);
+    int toX = Math.min(this.tileSize, this.camera.viewWidth - left);
+    int fromY = Math.max(0, -top);
+    int toY = Math.min(this.tileSize, this.camera.viewHeight - top);
+    for (int y = fromY; y < toY; y++) {
+      for (int x = fromX; x < toX; x++) {
+        this.image.setPixel(left + x, top + y, pixels[y * this.tileSize + x]);
+      }
+    }
+  }
+
+  // fills the given block of tiles at the camera's level with a shade from
+  // dark to yellow, by how much of it is powered
+  void drawBlock(TileGrid grid, int blockCol, int blockRow) {
+    int level = this.camera.level;
+    Color shade = this.shades[16 * this.pyramid.count(grid, level, blockCol, blockRow)
+        / this.pyramid.tiles(level, blockCol, blockRow)];
+    int left = this.camera.screenX(blockCol << level);
+    int top = this.camera.screenY(blockRow << level);
+    int toX = Math.min(left + Camera.LOD_CELL, this.camera.viewWidth);
+    int toY = Math.min(top + Camera.LOD_CELL, this.camera.viewHeight);
+    for (int y = Math.max(0, top); y < toY; y++) {
+      for (int x = Math.max(0, left); x < toX; x++) {
+        this.image.setPixel(x, y, shade);
+      }
+    }
+  }
+
+  // paints the pixels of a tile with the given look, matching the images made
+  // by TileImageCache: a dark square with wires from the middle to every
+  // connected side, and a star-like disc on the power station
+  Color[] paint(int look) {
+    Color wire = (look & 16) != 0 ? TileImageCache.REACH_SHADES[look >> 6] : Color.LIGHT_GRAY;
+    Color star = new Color(0, 255, 255);
+    Color starEdge = new Color(255, 128, 0);
+    Color[] pixels = new Color[this.tileSize * this.tileSize];
+    int wireWidth = this.camera.wireWidth();
+    int half = this.tileSize / 2;
+    int lo = half - wireWidth / 2;
+    int hi = lo + wireWidth;
+    int radius = this.tileSize / 3;
+    for (int y = 0; y < this.tileSize; y++) {
+      for (int x = 0; x < this.tileSize; x++) {
+        boolean vertical = x >= lo && x < hi;
+        boolean horizontal = y >= lo && y < hi;
+        Color color = Color.DARK_GRAY;
+        if (vertical && horizontal
+            || vertical && y < hi && (look & TileGrid.TOP) != 0
+            || vertical && y >= lo && (look & TileGrid.BOTTOM) != 0
+            || horizontal && x < hi && (look & TileGrid.LEFT) != 0
+            || horizontal && x >= lo && (look & TileGrid.RIGHT) != 0) {
+          color = wire;
+        }
+        if ((look & 32) != 0) {
+          int dx = x - half;
+          int dy = y - half;
+          int distance = dx * dx + dy * dy;
+          if (distance <= (radius - 1) * (radius - 1)) {
+            color = star;
+          }
+          else if (distance <= radius * radius) {
+            color = starEdge;
+          }
+        }
+        pixels[y * this.tileSize + x] = color;
+      }
+    }
+    return pixels;
+  }
+}
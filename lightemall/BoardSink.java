@@ -0,0 +1,6 @@
+// receives the boards of a batch, each along with the seed it was made from
+// the board is reused for a later seed once this returns, so it has to be
+// copied if kept
+interface BoardSink {
+  void board(long seed, PackedBoard board);
+}
@@ -0,0 +1,158 @@
+// the part of the board that is shown on the screen
+// x and y are the board pixel at the top left corner of the view; zoomed in,
+// every tile is tileSize pixels wide, and zoomed out past MIN_TILE_SIZE, every
+// block of 2^level by 2^level tiles is drawn as one LOD_CELL pixel square
+class Camera {
+  // the smallest and largest tiles the view zooms to
+  static final int MIN_TILE_SIZE = 8;
+  static final int MAX_TILE_SIZE = 120;
+  // the size of a block of tiles, in pixels, when zoomed out past tiles
+  static final int LOD_CELL = 4;
+
+  // the size of the board, in tiles
+  int width;
+  int height;
+  // the size of the view, in pixels
+  int viewWidth;
+  int viewHeight;
+  int x;
+  int y;
+  int tileSize;
+  // how many times blocks of tiles are halved along each side
+  int level;
+
+  Camera(int width, int height, int viewWidth, int viewHeight) {
+    this.width = width;
+    this.height = height;
+    this.viewWidth = viewWidth;
+    this.viewHeight = viewHeight;
+    this.x = 0;
+    this.y = 0;
+    this.tileSize = 60;
+    this.level = 0;
+  }
+
+  // is the view zoomed out past drawing single tiles?
+  boolean lod() {
+    return this.tileSize < MIN_TILE_SIZE;
+  }
+
+  // the width of wires at the current zoom
+  int wireWidth() {
+    return Math.max(1, this.tileSize / 12);
+  }
+
+  // the first and last columns and rows that are at least partly visible
+  int firstCol() {
+    return this.toTiles(this.x);
+  }
+
+  int lastCol() {
+    return Math.min(this.width - 1, this.tilesBefore(this.x + this.viewWidth) - 1);
+  }
+
+  int firstRow() {
+    return this.toTiles(this.y);
+  }
+
+  int lastRow() {
+    return Math.min(this.height - 1, this.tilesBefore(this.y + this.viewHeight) - 1);
+  }
+
+  // where the left edge of the given column and the top edge of the given row
+  // are on the screen
+  int screenX(int col) {
+    return (int) (this.toPixels(col) - this.x);
+  }
+
+  int screenY(int row) {
+    return (int) (this.toPixels(row) - this.y);
+  }
+
+  // the tile under the given board pixel
+  int toTiles(long pixel) {
+    return (int) Math.floorDiv(pixel << this.level, (long) this.tileSize);
+  }
+
+  // the number of tiles that are at least partly left of (or above) the given
+  // board pixel
+  int tilesBefore(long pixel) {
+    return (int) -Math.floorDiv(-(pixel << this.level), (long) this.tileSize);
+  }
+
+  // the board pixel where the given tile starts
+  long toPixels(long tile) {
+    return tile * this.tileSize >> this.level;
+  }
+
+  // the index (col * height + row) of the tile under the given point of the
+  // screen, or -1 if there is none
+  int tileAt(int screenX, int screenY) {
+    int c = this.toTiles(screenX + this.x);
+    int r = this.toTiles(screenY + this.y);
+    if (c < 0 || r < 0 || c > this.width - 1 || r > this.height - 1) {
+      return -1;
+    }
+    return c * this.height + r;
+  }
+
+  // moves the view by the given number of screen pixels, as far as the board
+  // goes
+  void pan(int dx, int dy) {
+    long right = this.toPixels(this.width) - this.viewWidth;
+    long bottom = this.toPixels(this.height) - this.viewHeight;
+    this.x = (int) Math.max(0, Math.min((long) this.x + dx, right));
+    this.y = (int) Math.max(0, Math.min((long) this.y + dy, bottom));
+  }
+
+  // changes the size of tiles, keeping the middle of the view in place
+  void zoom(int tileSize) {
+    this.rescale(Math.max(MIN_TILE_SIZE, Math.min(MAX_TILE_SIZE, tileSize)), 0);
+  }
+
+  // shows twice as much detail, down to MAX_TILE_SIZE pixel tiles
+  void zoomIn() {
+    if (this.level > 0) {
+      this.rescale(this.tileSize, this.level - 1);
+    }
+    else if (this.lod()) {
+      this.rescale(MIN_TILE_SIZE, 0);
+    }
+    else {
+      this.zoom(this.tileSize * 2);
+    }
+  }
+
+  // shows twice as much of the board, until all of it fits in the view
+  void zoomOut() {
+    if (this.fits()) {
+      return;
+    }
+    if (this.tileSize > MIN_TILE_SIZE) {
+      this.zoom(this.tileSize / 2);
+    }
+    else if (!this.lod()) {
+      this.rescale(LOD_CELL, 0);
+    }
+    else {
+      this.rescale(LOD_CELL, this.level + 1);
+    }
+  }
+
+  // does the whole board fit in the view?
+  boolean fits() {
+    return this.toPixels(this.width) <= this.viewWidth
+        && this.toPixels(this.height) <= this.viewHeight;
+  }
+
+  // switches to the given scale, keeping the middle of the view in place
+  void rescale(int tileSize, int level) {
+    double middleX = (double) (this.x + this.viewWidth / 2) * (1L << this.level) / this.tileSize;
+    double middleY = (double) (this.y + this.viewHeight / 2) * (1L << this.level) / this.tileSize;
+    this.tileSize = tileSize;
+    this.level = level;
+    this.x = (int) (middleX * tileSize / (1L << level)) - this.viewWidth / 2;
+    this.y = (int) (middleY * tileSize / (1L << level)) - this.viewHeight / 2;
+    this.pan(0, 0);
+  }
+}
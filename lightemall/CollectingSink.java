@@ -0,0 +1,14 @@
+import java.util.HashMap;
+
+// keeps a copy of the tiles of every board it receives, by seed
+class CollectingSink implements BoardSink {
+  HashMap<Long, byte[]> cells;
+
+  CollectingSink() {
+    this.cells = new HashMap<Long, byte[]>();
+  }
+
+  public void board(long seed, PackedBoard board) {
+    this.cells.put(seed, board.cells.clone());
+  }
+}
@@ -0,0 +1,164 @@
+// which tiles are wired to each other, as disjoint sets over the tiles where
+// two neighbors share a set when their connectors meet, so whether two tiles
+// are connected and how many tiles one is connected to are answered in
+// near-constant time, without a search from the power station
+// a rotation that only makes new links joins their sets straight away; one
+// that breaks a link cannot be taken out of the sets, so the rotated tile is
+// kept until the next query, which splits up only the sets such tiles are in:
+// every tile of such a set is still wired to a kept tile or to one of its
+// neighbors, so a search from those finds the whole set, which is then put
+// back together from its links
+// a query after a click on a connected tile therefore costs the size of the
+// set it was in, not the whole board; only bulk changes rebuild everything
+class ConnectivityIndex {
+  // for the neighbors of tiles and whether their connectors meet
+  PowerGrid power;
+  int size;
+  DisjointSet sets;
+  // the rotated tiles that broke a link since the last query
+  int[] broken;
+  int brokenCount;
+  boolean[] isBroken;
+  // the tiles of the sets being split up, and which ones have been found
+  int[] region;
+  boolean[] inRegion;
+  // whether the board was changed in bulk since the sets were last built
+  boolean stale;
+
+  ConnectivityIndex(PowerGrid power) {
+    this.power = power;
+    this.size = power.size();
+    this.sets = new DisjointSet(this.size);
+    this.broken = new int[this.size];
+    this.isBroken = new boolean[this.size];
+    this.region = new int[this.size];
+    this.inRegion = new boolean[this.size];
+    this.rebuild();
+  }
+
+  // builds the sets from scratch, joining every pair of neighbors whose
+  // connectors meet
+  void rebuild() {
+    this.sets.reset();
+    for (int tile = 0; tile < this.size; tile++) {
+      this.joinLinks(tile);
+    }
+    for (int i = 0; i < this.brokenCount; i++) {
+      this.isBroken[this.broken[i]] = false;
+    }
+    this.brokenCount = 0;
+    this.stale = false;
+  }
+
+  // joins the given tile to every neighbor its connectors meet
+  void joinLinks(int tile) {
+    for (int dir = TileGrid.TOP; dir <= TileGrid.LEFT; dir <<= 1) {
+      int next = this.power.linked(tile, dir);
+      if (next >= 0) {
+        this.sets.union(tile, next);
+      }
+    }
+  }
+
+  // notes that the tile at the given index was rotated from the given
+  // connectors to the ones it has now
+  void rotated(int index, int oldMask) {
+    if (this.stale) {
+      return;
+    }
+    int mask = this.power.grid.mask(index);
+    for (int dir = TileGrid.TOP; dir <= TileGrid.LEFT; dir <<= 1) {
+      int next = this.power.neighbor(index, dir);
+      if (next < 0 || (this.power.grid.mask(next) & PowerGrid.opposite(dir)) == 0) {
+        continue;
+      }
+      if ((oldMask & dir) != 0 && (mask & dir) == 0) {
+        if (!this.isBroken[index]) {
+          this.isBroken[index] = true;
+          this.broken[this.brokenCount++] = index;
+        }
+      }
+      else if ((oldMask & dir) == 0 && (mask & dir) != 0) {
+        this.sets.union(index, next);
+      }
+    }
+  }
+
+  // notes that the board was changed in bulk
+  void changed() {
+    this.stale = true;
+  }
+
+  // brings the sets up to date: rebuilds them all after a bulk change, or
+  // splits up only the sets holding a tile that broke a link
+  void refresh() {
+    if (this.stale) {
+      this.rebuild();
+      return;
+    }
+    if (this.brokenCount == 0) {
+      return;
+    }
+    // every tile of an old set is wired to a broken tile or to a neighbor of
+    // one in the same old set, so those are where the search starts
+    int count = 0;
+    for (int i = 0; i < this.brokenCount; i++) {
+      int tile = this.broken[i];
+      this.isBroken[tile] = false;
+      int root = this.sets.find(tile);
+      count = this.addToRegion(tile, count);
+      for (int dir = TileGrid.TOP; dir <= TileGrid.LEFT; dir <<= 1) {
+        int next = this.power.neighbor(tile, dir);
+        if (next >= 0 && this.sets.find(next) == root) {
+          count = this.addToRegion(next, count);
+        }
+      }
+    }
+    this.brokenCount = 0;
+    for (int i = 0; i < count; i++) {
+      int tile = this.region[i];
+      for (int dir = TileGrid.TOP; dir <= TileGrid.LEFT; dir <<= 1) {
+        int next = this.power.linked(tile, dir);
+        if (next >= 0) {
+          count = this.addToRegion(next, count);
+        }
+      }
+    }
+    // the region is exactly the old sets, so no tile outside of it points
+    // into it, and its tiles can be put in sets of their own and joined again
+    for (int i = 0; i < count; i++) {
+      this.sets.isolate(this.region[i]);
+    }
+    for (int i = 0; i < count; i++) {
+      this.inRegion[this.region[i]] = false;
+      this.joinLinks(this.region[i]);
+    }
+  }
+
+  // adds the given tile to the region unless it is in it, returning the new
+  // number of tiles in the region
+  int addToRegion(int tile, int count) {
+    if (!this.inRegion[tile]) {
+      this.inRegion[tile] = true;
+      this.region[count++] = tile;
+    }
+    return count;
+  }
+
+  // are the tiles at the two given indices wired to each other?
+  boolean connected(int a, int b) {
+    this.refresh();
+    return this.sets.find(a) == this.sets.find(b);
+  }
+
+  // the number of tiles wired to the tile at the given index, itself included
+  int componentSize(int index) {
+    this.refresh();
+    return this.sets.sizeOf(index);
+  }
+
+  // is every tile wired to every other one?
+  boolean allConnected() {
+    return this.componentSize(0) == this.size;
+  }
+}
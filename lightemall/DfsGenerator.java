@@ -0,0 +1,38 @@
+import java.util.Random;
+
+// a depth-first search that moves to a random unvisited neighbor, backing up
+// along an explicit stack when there is none
+class DfsGenerator implements BoardGenerator {
+  public void spanningTree(int width, int height, Random rand, int[] from, int[] to) {
+    int numTiles = width * height;
+    boolean[] visited = new boolean[numTiles];
+    int[] stack = new int[numTiles];
+    int[] neighbors = new int[4];
+    int size = 0;
+    int count = 0;
+    int start = rand.nextInt(numTiles);
+    visited[start] = true;
+    stack[size++] = start;
+    while (size > 0) {
+      int tile = stack[size - 1];
+      int options = 0;
+      int all = GeneratorUtil.neighbors(tile, width, height, neighbors);
+      for (int i = 0; i < all; i++) {
+        if (!visited[neighbors[i]]) {
+          neighbors[options++] = neighbors[i];
+        }
+      }
+      if (options == 0) {
+        size -= 1;
+      }
+      else {
+        int chosen = neighbors[rand.nextInt(options)];
+        visited[chosen] = true;
+        from[count] = tile;
+        to[count] = chosen;
+        count += 1;
+        stack[size++] = chosen;
+      }
+    }
+  }
+}
@@ -0,0 +1,69 @@
+// a forest of disjoint sets over the numbers 0 until the given size, kept
+// flat by halving paths on every find and hanging smaller trees under larger
+// ones on every union
+class DisjointSet {
+  // the parent of every element; roots are their own parent
+  int[] parent;
+  // the number of elements under every root
+  int[] size;
+  // the number of disjoint sets
+  int count;
+
+  DisjointSet(int n) {
+    this.parent = new int[n];
+    this.size = new int[n];
+    this.reset();
+  }
+
+  // puts every element back into a set of its own
+  void reset() {
+    for (int i = 0; i < this.parent.length; i++) {
+      this.parent[i] = i;
+      this.size[i] = 1;
+    }
+    this.count = this.parent.length;
+  }
+
+  // puts the given element into a set of its own, which only keeps the sets
+  // whole when every element of its set is put into a set of its own too
+  void isolate(int x) {
+    if (this.parent[x] != x) {
+      this.count += 1;
+    }
+    this.parent[x] = x;
+    this.size[x] = 1;
+  }
+
+  // the representative of the set containing the given element
+  int find(int x) {
+    while (this.parent[x] != x) {
+      this.parent[x] = this.parent[this.parent[x]];
+      x = this.parent[x];
+    }
+    return x;
+  }
+
+  // combines the sets containing the two given elements, returning false if
+  // they were already the same set
+  boolean union(int a, int b) {
+    int ra = this.find(a);
+    int rb = this.find(b);
+    if (ra == rb) {
+      return false;
+    }
+    if (this.size[ra] < this.size[rb]) {
+      int swap = ra;
+      ra = rb;
+      rb = swap;
+    }
+    this.parent[rb] = ra;
+    this.size[ra] += this.size[rb];
+    this.count -= 1;
+    return true;
+  }
+
+  // the number of elements in the set containing the given element
+  int sizeOf(int x) {
+    return this.size[this.find(x)];
+  }
+}
@@ -0,0 +1,78 @@
+import java.util.Random;
+
+// eller's algorithm, which builds the tree one row at a time and only ever
+// remembers which tiles of the current row are already connected, so boards
+// of any height can be streamed out using memory proportional to their width
+class EllerGenerator implements BoardGenerator {
+  public void spanningTree(int width, int height, Random rand, int[] from, int[] to) {
+    this.stream(width, height, rand, new TreeEdgeSink(height, from, to));
+  }
+
+  // generates the board one row at a time from the top, handing the
+  // connectors of every finished row to the given sink
+  void stream(int width, int height, Random rand, RowSink sink) {
+    // the connectors of the current row
+    byte[] masks = new byte[width];
+    // which columns of the current row are connected so far
+    DisjointSet sets = new DisjointSet(width);
+    // which columns of the current row connect to the row below
+    boolean[] down = new boolean[width];
+    // per set of the current row, whether it continues downwards and its
+    // rightmost column
+    boolean[] continues = new boolean[width];
+    int[] lastColumn = new int[width];
+    // the set of the current row every column was in
+    int[] roots = new int[width];
+    // per set of the previous row, the first column of the new row below it
+    int[] joined = new int[width];
+    for (int r = 0; r < height; r++) {
+      boolean lastRow = r == height - 1;
+      for (int c = 0; c < width; c++) {
+        masks[c] = (byte) (down[c] ? TileGrid.TOP : 0);
+      }
+      // randomly join neighbors in different sets; the last row joins them all
+      for (int c = 0; c < width - 1; c++) {
+        if ((lastRow || rand.nextBoolean()) && sets.union(c, c + 1)) {
+          masks[c] |= TileGrid.RIGHT;
+          masks[c + 1] |= TileGrid.LEFT;
+        }
+      }
+      if (lastRow) {
+        sink.row(r, masks);
+        break;
+      }
+      // randomly continue downwards, making sure every set does at least once
+      for (int c = 0; c < width; c++) {
+        roots[c] = sets.find(c);
+        continues[roots[c]] = false;
+      }
+      for (int c = 0; c < width; c++) {
+        down[c] = rand.nextBoolean();
+        continues[roots[c]] = continues[roots[c]] || down[c];
+        lastColumn[roots[c]] = c;
+      }
+      for (int c = 0; c < width; c++) {
+        if (!continues[roots[c]] && lastColumn[roots[c]] == c) {
+          down[c] = true;
+        }
+      }
+      // tiles of the next row below the same set start out connected
+      sets.reset();
+      for (int c = 0; c < width; c++) {
+        joined[c] = -1;
+      }
+      for (int c = 0; c < width; c++) {
+        if (down[c]) {
+          masks[c] |= TileGrid.BOTTOM;
+          if (joined[roots[c]] == -1) {
+            joined[roots[c]] = c;
+          }
+          else {
+            sets.union(joined[roots[c]], c);
+          }
+        }
+      }
+      sink.row(r, masks);
+    }
+  }
+}
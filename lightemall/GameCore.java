@@ -0,0 +1,199 @@
+import java.util.Random;
+
+// the rules of the game, without a window, a clock or any images: tiles are
+// rotated and the power station is moved on any TileGrid, and the power
+// engine keeps track of which tiles are lit
+// LightEmAll drives one over its GamePieces, or over its packed tiles when
+// the board is large; batch runs and tests can drive one over a PackedBoard
+// directly
+class GameCore {
+  TileGrid grid;
+  // keeps track of which tiles are connected to the power station
+  PowerGrid power;
+  // the index of the tile holding the power station
+  int station;
+  // whether power has been propagated since the board was last changed in bulk
+  boolean lit;
+  // which tiles are wired to which, built the first time it is asked for
+  ConnectivityIndex components;
+  // how far power reaches in radius mode, or null when it reaches every
+  // connected tile
+  PowerRadius reach;
+
+  GameCore(TileGrid grid, int station) {
+    this.grid = grid;
+    this.power = new PowerGrid(grid);
+    this.station = station;
+    this.lit = false;
+  }
+
+  // a new game on a packed board, wired from a spanning tree made by the given
+  // generator and scrambled the same way LightEmAll scrambles its board, so
+  // the same seed gives the same puzzle either way
+  static GameCore generate(int width, int height, Random rand, BoardGenerator generator) {
+    return new GameCore(PackedBoard.generate(width, height, rand, generator), 0);
+  }
+
+  // rotates the tile at the given index in a clockwise direction, updating
+  // only the tiles whose power changes once the board has been lit
+  void rotate(int index) {
+    int oldMask = this.grid.mask(index);
+    this.grid.rotate(index);
+    this.rotatedFrom(index, oldMask);
+    if (this.lit) {
+      this.power.rotated(index);
+    }
+    else {
+      this.relight();
+    }
+  }
+
+  // rotates the tile at the given index in a counter-clockwise direction,
+  // taking back a rotation with the same incremental update
+  void rotateBack(int index) {
+    int oldMask = this.grid.mask(index);
+    for (int r = 0; r < 3; r++) {
+      this.grid.rotate(index);
+    }
+    this.rotatedFrom(index, oldMask);
+    if (this.lit) {
+      this.power.rotated(index);
+    }
+    else {
+      this.relight();
+    }
+  }
+
+  // tells the connectivity indices that have been built that the tile at the
+  // given index was rotated from the given connectors
+  void rotatedFrom(int index, int oldMask) {
+    if (this.components != null) {
+      this.components.rotated(index, oldMask);
+    }
+    if (this.reach != null) {
+      this.reach.rotated(index);
+    }
+  }
+
+  // moves the power station to the neighbor in the given direction (see
+  // TileGrid), as long as their wires meet, returning whether it moved
+  // the neighbor is lit along with the station, so once the board has been
+  // lit this takes constant time and nothing has to be lit again
+  boolean moveStation(int dir) {
+    int next = this.power.linked(this.station, dir);
+    if (next < 0) {
+      return false;
+    }
+    this.grid.moveStation(this.station, next);
+    if (this.lit) {
+      this.power.moveStation(next);
+    }
+    this.station = next;
+    if (this.reach != null) {
+      this.reach.changed();
+    }
+    return true;
+  }
+
+  // moves the power station to the tile at the given index, wherever it is:
+  // a lit tile keeps everything lit as it is, and only a tile that is not
+  // lit has the board lit again from it
+  void teleport(int index) {
+    if (index == this.station) {
+      return;
+    }
+    this.grid.moveStation(this.station, index);
+    this.station = index;
+    if (this.reach != null) {
+      this.reach.changed();
+    }
+    if (this.lit && this.power.isPowered(index)) {
+      this.power.reroot(index);
+    }
+    else {
+      this.relight();
+    }
+  }
+
+  // lights the board from scratch, starting at the power station
+  void relight() {
+    this.power.relight(this.station);
+    this.lit = true;
+  }
+
+  // forgets what is lit after the board has been changed in bulk, with the
+  // power station at the given index
+  void reset(int station) {
+    this.station = station;
+    this.lit = false;
+    if (this.components != null) {
+      this.components.changed();
+    }
+    if (this.reach != null) {
+      this.reach.changed();
+    }
+  }
+
+  // limits power to the tiles within the given number of hops of the power
+  // station, or lets it reach every connected tile again if the radius is 0
+  void limitReach(int radius) {
+    this.reach = radius > 0 ? new PowerRadius(this.power, radius) : null;
+  }
+
+  // forgets what is lit after every tile of the grid was replaced by one that
+  // is not powered, with the power station at the given index; unlike reset,
+  // the tiles lit before are not told they lost their power, since the new
+  // ones never had it
+  void clear(int station) {
+    this.power.clear();
+    this.reset(station);
+  }
+
+  // which tiles are wired to which
+  ConnectivityIndex components() {
+    if (this.components == null) {
+      this.components = new ConnectivityIndex(this.power);
+    }
+    return this.components;
+  }
+
+  // the number of tiles wired to the tile at the given index, lit or not
+  int componentSize(int index) {
+    return this.components().componentSize(index);
+  }
+
+  // is the tile at the given index connected to the power station?
+  boolean isPowered(int index) {
+    return this.power.isPowered(index);
+  }
+
+  // is the tile at the given column and row wired to the power station?
+  // asks the connectivity index rather than the power engine, so the answer
+  // is right even when the board has been changed in bulk and not lit again
+  boolean isPowered(int col, int row) {
+    return this.components().connected(col * this.grid.height() + row, this.station);
+  }
+
+  // the number of tiles connected to the power station
+  int poweredCount() {
+    return this.power.poweredCount;
+  }
+
+  // is every tile connected to the power station?
+  boolean allPowered() {
+    return this.power.allPowered();
+  }
+
+  // is the puzzle solved: every tile connected to the power station and, in
+  // radius mode, within its reach?
+  boolean solved() {
+    if (!this.power.allPowered()) {
+      return false;
+    }
+    if (this.reach != null) {
+      this.reach.refresh(this.station);
+      return this.reach.allInReach();
+    }
+    return true;
+  }
+}
@@ -0,0 +1,15 @@
+// helpers shared by the board generators
+class GeneratorUtil {
+  // writes the indices of the tiles next to the given one into neighbors, in
+  // the order top, right, bottom, left, and returns how many there are
+  static int neighbors(int tile, int width, int height, int[] neighbors) {
+    int count = 0;
+    for (int dir = TileGrid.TOP; dir <= TileGrid.LEFT; dir <<= 1) {
+      int next = TileGrid.neighbor(tile, dir, width, height);
+      if (next >= 0) {
+        neighbors[count++] = next;
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,125 @@
+import java.util.Arrays;
+import java.util.Random;
+
+// kruskal's algorithm over every edge between adjacent tiles, with random
+// weights below the number of tiles
+class KruskalGenerator implements BoardGenerator {
+  // every edge between adjacent tiles, sorted by weight
+  int[] edgeFrom;
+  int[] edgeTo;
+  int[] edgeWeight;
+  int edgeCount;
+  // scratch space kept between trees of the same size, so a generator that
+  // makes many boards only allocates for the first one
+  int[] unsortedFrom;
+  int[] unsortedTo;
+  int[] unsortedWeight;
+  int[] starts;
+  int[] tree;
+  DisjointSet sets;
+  // whether to time its phases in Metrics; only the generator of the game
+  // being played is, since metrics are only recorded from the game's thread
+  boolean timed;
+
+  KruskalGenerator() {
+    this(false);
+  }
+
+  KruskalGenerator(boolean timed) {
+    this.timed = timed;
+  }
+
+  public void spanningTree(int width, int height, Random rand, int[] from, int[] to) {
+    long start = this.timed ? Metrics.now() : 0;
+    this.generateEdge(width, height, rand);
+    long edged = this.timed ? Metrics.lap(Metrics.edges, start) : 0;
+    int numTiles = width * height;
+    if (this.sets == null || this.sets.parent.length != numTiles) {
+      this.tree = new int[numTiles - 1];
+      this.sets = new DisjointSet(numTiles);
+    }
+    else {
+      this.sets.reset();
+    }
+    int count = kruskal(numTiles, this.edgeFrom, this.edgeTo, this.edgeCount, this.sets,
+        this.tree);
+    if (this.timed) {
+      Metrics.lap(Metrics.kruskals, edged);
+    }
+    for (int i = 0; i < count; i++) {
+      from[i] = this.edgeFrom[this.tree[i]];
+      to[i] = this.edgeTo[this.tree[i]];
+    }
+  }
+
+  // generates every edge between adjacent tiles with a random weight, sorted
+  // from lowest to greatest weight
+  // weights are below the number of tiles, so a counting sort orders them in
+  // linear time and keeps edges of equal weight in the order they were made
+  void generateEdge(int width, int height, Random rand) {
+    int val = height * width;
+    int numEdges = (height - 1) * width + (width - 1) * height;
+    if (this.edgeFrom == null || this.edgeFrom.length != numEdges
+        || this.starts.length != val + 1) {
+      this.unsortedFrom = new int[numEdges];
+      this.unsortedTo = new int[numEdges];
+      this.unsortedWeight = new int[numEdges];
+      this.starts = new int[val + 1];
+      this.edgeFrom = new int[numEdges];
+      this.edgeTo = new int[numEdges];
+      this.edgeWeight = new int[numEdges];
+    }
+    else {
+      Arrays.fill(this.starts, 0);
+    }
+    int[] from = this.unsortedFrom;
+    int[] to = this.unsortedTo;
+    int[] weight = this.unsortedWeight;
+    int count = 0;
+    for (int w = 0; w < width; w++) {
+      for (int h = 0; h < height; h++) {
+        int tile = w * height + h;
+        if (h < height - 1) {
+          from[count] = tile;
+          to[count] = tile + 1;
+          weight[count] = rand.nextInt(val);
+          count += 1;
+        }
+        if (w < width - 1) {
+          from[count] = tile;
+          to[count] = tile + height;
+          weight[count] = rand.nextInt(val);
+          count += 1;
+        }
+      }
+    }
+    // starts[k] is where the first edge of weight k goes
+    int[] starts = this.starts;
+    for (int i = 0; i < numEdges; i++) {
+      starts[weight[i] + 1] += 1;
+    }
+    for (int k = 0; k < val; k++) {
+      starts[k + 1] += starts[k];
+    }
+    for (int i = 0; i < numEdges; i++) {
+      int slot = starts[weight[i]]++;
+      this.edgeFrom[slot] = from[i];
+      this.edgeTo[slot] = to[i];
+      this.edgeWeight[slot] = weight[i];
+    }
+    this.edgeCount = numEdges;
+  }
+
+  // walks the given sorted edges, writing the position of every edge that
+  // joins two different trees into tree, and returns how many there are
+  static int kruskal(int numTiles, int[] edgeFrom, int[] edgeTo, int edgeCount,
+      DisjointSet sets, int[] tree) {
+    int count = 0;
+    for (int i = 0; i < edgeCount && count < numTiles - 1; i++) {
+      if (sets.union(edgeFrom[i], edgeTo[i])) {
+        tree[count++] = i;
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,102 @@
+// counts recorded latencies, in nanoseconds, in buckets whose width doubles
+// every 16 buckets, so any value is kept to within 1/16 of itself using a
+// fixed array of counts and recording never allocates
+class LatencyHistogram {
+  // values below 32 get a bucket each; above that, every power of two is
+  // split into 16 buckets
+  static final int SUB_BUCKETS = 16;
+  static final int BUCKETS = 60 * SUB_BUCKETS;
+
+  long[] counts;
+  long count;
+  long total;
+  long min;
+  long max;
+
+  LatencyHistogram() {
+    this.counts = new long[BUCKETS];
+    this.reset();
+  }
+
+  // forgets every recorded value
+  void reset() {
+    java.util.Arrays.fill(this.counts, 0);
+    this.count = 0;
+    this.total = 0;
+    this.min = Long.MAX_VALUE;
+    this.max = 0;
+  }
+
+  // records one value, treating negative ones as 0
+  void record(long value) {
+    value = Math.max(0, value);
+    this.counts[bucketOf(value)] += 1;
+    this.count += 1;
+    this.total += value;
+    this.min = Math.min(this.min, value);
+    this.max = Math.max(this.max, value);
+  }
+
+  // adds every value recorded by the given histogram to this one
+  void add(LatencyHistogram other) {
+    for (int i = 0; i < BUCKETS; i++) {
+      this.counts[i] += other.counts[i];
+    }
+    this.count += other.count;
+    this.total += other.total;
+    this.min = Math.min(this.min, other.min);
+    this.max = Math.max(this.max, other.max);
+  }
+
+  // the average of the recorded values, or 0 if there are none
+  double mean() {
+    return this.count == 0 ? 0 : (double) this.total / this.count;
+  }
+
+  // the smallest recorded value that the given fraction of values are at or
+  // below, to within the width of its bucket, or 0 if there are none
+  long percentile(double fraction) {
+    if (this.count == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(fraction * this.count));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += this.counts[i];
+      if (seen >= rank) {
+        return Math.max(this.min, Math.min(this.max, highestIn(i)));
+      }
+    }
+    return this.max;
+  }
+
+  // a one line summary in microseconds
+  String summary() {
+    return String.format("n=%d mean=%.1fus p50=%.1fus p90=%.1fus p99=%.1fus max=%.1fus",
+        this.count, this.mean() / 1000.0, this.percentile(0.5) / 1000.0,
+        this.percentile(0.9) / 1000.0, this.percentile(0.99) / 1000.0, this.max / 1000.0);
+  }
+
+  // a one line summary of values that are counts rather than latencies
+  String countSummary() {
+    return String.format("n=%d mean=%.1f p50=%d p90=%d p99=%d max=%d", this.count, this.mean(),
+        this.percentile(0.5), this.percentile(0.9), this.percentile(0.99), this.max);
+  }
+
+  // the bucket the given value is counted in
+  static int bucketOf(long value) {
+    int shift = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - 4);
+    return shift * SUB_BUCKETS + (int) (value >> shift);
+  }
+
+  // the smallest and largest values counted in the given bucket
+  static long lowestIn(int bucket) {
+    int shift = Math.max(0, bucket / SUB_BUCKETS - 1);
+    return (long) (bucket - shift * SUB_BUCKETS) << shift;
+  }
+
+  static long highestIn(int bucket) {
+    int shift = Math.max(0, bucket / SUB_BUCKETS - 1);
+    return lowestIn(bucket) + (1L << shift) - 1;
+  }
+}
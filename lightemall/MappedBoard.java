@@ -0,0 +1,182 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// a saved board used in place, straight from a memory-mapped file, so even
+// the largest boards open without reading or unpacking a single tile
+// the file is mapped in chunks, since one mapping can hold at most 2GB;
+// which tiles are powered is not saved, so it is kept in memory, one bit per
+// tile
+// a board mapped READ_WRITE saves its rotations and its power station to
+// the file as they happen, one mapped PRIVATE keeps them to itself, and one
+// mapped READ_ONLY can only be looked at and solved, not played
+class MappedBoard implements TileGrid {
+  // the size of every mapped chunk of tiles
+  static final int CHUNK_BITS = 30;
+  static final int CHUNK = 1 << CHUNK_BITS;
+
+  FileChannel channel;
+  FileChannel.MapMode mode;
+  MappedByteBuffer header;
+  MappedByteBuffer[] chunks;
+  int width;
+  int height;
+  // the index of the tile holding the power station
+  int station;
+  long seed;
+  int clicks;
+  int time;
+  // one bit per tile, set for the powered ones
+  long[] powered;
+
+  MappedBoard(FileChannel channel, FileChannel.MapMode mode) throws IOException {
+    this.channel = channel;
+    this.mode = mode;
+    if (channel.size() < BoardFile.HEADER) {
+      throw new IllegalArgumentException("not a board file: too short");
+    }
+    this.header = channel.map(mode, 0, BoardFile.HEADER);
+    if (this.header.getInt(0) != BoardFile.MAGIC) {
+      throw new IllegalArgumentException("not a board file: bad magic number");
+    }
+    this.width = this.header.getInt(BoardFile.WIDTH);
+    this.height = this.header.getInt(BoardFile.HEIGHT);
+    this.station = this.header.getInt(BoardFile.STATION);
+    this.seed = this.header.getLong(BoardFile.SEED);
+    this.clicks = this.header.getInt(BoardFile.CLICKS);
+    this.time = this.header.getInt(BoardFile.TIME);
+    long tiles = (long) this.width * this.height;
+    if (this.width <= 0 || this.height <= 0 || tiles > Integer.MAX_VALUE
+        || channel.size() < BoardFile.size(this.width, this.height)) {
+      throw new IllegalArgumentException("not a board file: bad size " + this.width + "x"
+          + this.height);
+    }
+    if (this.station < 0 || this.station >= tiles) {
+      throw new IllegalArgumentException("not a board file: station " + this.station
+          + " is off the " + this.width + "x" + this.height + " board");
+    }
+    long bytes = (tiles + 1) / 2;
+    this.chunks = new MappedByteBuffer[(int) ((bytes + CHUNK - 1) >> CHUNK_BITS)];
+    for (int i = 0; i < this.chunks.length; i++) {
+      long start = (long) i << CHUNK_BITS;
+      this.chunks[i] = channel.map(mode, BoardFile.HEADER + start,
+          Math.min(CHUNK, bytes - start));
+    }
+    this.powered = new long[(int) ((tiles + 63) >> 6)];
+  }
+
+  // maps the board saved at the given path in the given mode
+  static MappedBoard open(Path path, FileChannel.MapMode mode) {
+    try {
+      FileChannel channel = mode == FileChannel.MapMode.READ_ONLY
+          ? FileChannel.open(path, StandardOpenOption.READ)
+          : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+      try {
+        return new MappedBoard(channel, mode);
+      }
+      catch (IOException | RuntimeException e) {
+        // a file that is turned away is not left open
+        try {
+          channel.close();
+        }
+        catch (IOException closing) {
+          e.addSuppressed(closing);
+        }
+        throw e;
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // the number of columns on the board
+  public int width() {
+    return this.width;
+  }
+
+  // the number of rows on the board
+  public int height() {
+    return this.height;
+  }
+
+  // the position in the file, after the header, of the nibble holding the
+  // tile at the given index
+  long nibble(int index) {
+    return (long) (index % this.height) * this.width + index / this.height;
+  }
+
+  // the connector bits of the tile at the given index
+  public int mask(int index) {
+    long nibble = this.nibble(index);
+    MappedByteBuffer chunk = this.chunks[(int) (nibble >> (CHUNK_BITS + 1))];
+    int b = chunk.get((int) (nibble >> 1) & (CHUNK - 1));
+    return (b >> (int) (nibble & 1) * 4) & 15;
+  }
+
+  // records whether the tile at the given index is connected to the power
+  // station
+  public void setPowered(int index, boolean powered) {
+    if (powered) {
+      this.powered[index >> 6] |= 1L << index;
+    }
+    else {
+      this.powered[index >> 6] &= ~(1L << index);
+    }
+  }
+
+  // is the tile at the given index powered?
+  public boolean isPowered(int index) {
+    return (this.powered[index >> 6] & 1L << index) != 0;
+  }
+
+  // does the tile at the given index hold the power station?
+  public boolean isStation(int index) {
+    return index == this.station;
+  }
+
+  // rotates the tile at the given index in a clockwise direction
+  public void rotate(int index) {
+    long nibble = this.nibble(index);
+    MappedByteBuffer chunk = this.chunks[(int) (nibble >> (CHUNK_BITS + 1))];
+    int at = (int) (nibble >> 1) & (CHUNK - 1);
+    int shift = (int) (nibble & 1) * 4;
+    int b = chunk.get(at);
+    int mask = PackedBoard.rotateMask((b >> shift) & 15);
+    chunk.put(at, (byte) (b & ~(15 << shift) | mask << shift));
+  }
+
+  // moves the power station from one tile to another
+  public void moveStation(int from, int to) {
+    this.station = to;
+    this.header.putInt(BoardFile.STATION, to);
+  }
+
+  // records the clicks and the clock of the game being played on this board
+  void progress(int clicks, int time) {
+    this.clicks = clicks;
+    this.time = time;
+    this.header.putInt(BoardFile.CLICKS, clicks);
+    this.header.putInt(BoardFile.TIME, time);
+  }
+
+  // writes every change out to the file, if it is mapped READ_WRITE, and lets
+  // go of it
+  void close() {
+    try {
+      if (this.mode == FileChannel.MapMode.READ_WRITE) {
+        this.header.force();
+        for (MappedByteBuffer chunk : this.chunks) {
+          chunk.force();
+        }
+      }
+      this.channel.close();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,180 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// where frame time goes while the game is played: how long drawing a frame,
+// lighting the board, every click and key and every phase of making a board
+// take, and how many tiles were looked at per propagation and how many images
+// were made and tiles drawn per frame, each in a histogram that never
+// allocates
+// off unless the game is run with -Dlightemall.metrics=true; every recording
+// is behind a check of ENABLED, a constant once the class is loaded, so the
+// JIT drops it when metrics are off
+// when on, everything is shown through JMX as lightemall:type=Metrics, and
+// with -Dlightemall.metrics.file=path it is added to that file when the game
+// exits; the board size is reported along with it, so stalls can be matched
+// to the size of board they happened on
+// recordings are only made from the thread running the game, and read from
+// other threads without locks, so a report may be off by an event in flight
+class Metrics implements MetricsMBean {
+  static final boolean ENABLED = Boolean.getBoolean("lightemall.metrics");
+
+  // latencies of the game loop, in nanoseconds
+  static LatencyHistogram scenes = new LatencyHistogram();
+  static LatencyHistogram propagations = new LatencyHistogram();
+  static LatencyHistogram clicks = new LatencyHistogram();
+  static LatencyHistogram keys = new LatencyHistogram();
+  // latencies of every phase of making a new board, in nanoseconds; the tree
+  // is made in two phases by the game's generator, its edges then kruskal
+  static LatencyHistogram tiles = new LatencyHistogram();
+  static LatencyHistogram trees = new LatencyHistogram();
+  static LatencyHistogram edges = new LatencyHistogram();
+  static LatencyHistogram kruskals = new LatencyHistogram();
+  static LatencyHistogram wiring = new LatencyHistogram();
+  static LatencyHistogram scrambling = new LatencyHistogram();
+  // counts per event: tiles looked at by a propagation or a click, images
+  // made for a frame and tiles drawn into the raster for a frame
+  static LatencyHistogram visited = new LatencyHistogram();
+  static LatencyHistogram images = new LatencyHistogram();
+  static LatencyHistogram drawn = new LatencyHistogram();
+  // images made since the last frame was recorded
+  static long imagesMade;
+  // the size of the last board made
+  static int width;
+  static int height;
+
+  static {
+    if (ENABLED) {
+      register();
+      String file = System.getProperty("lightemall.metrics.file");
+      if (file != null) {
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+          public void run() {
+            dump(Paths.get(file));
+          }
+        });
+      }
+    }
+  }
+
+  // the time now, for timing something, or 0 if metrics are off
+  static long now() {
+    return ENABLED ? System.nanoTime() : 0;
+  }
+
+  // records the time since the given one in the given histogram, returning
+  // the time now so phases can be timed one after another
+  static long lap(LatencyHistogram histogram, long since) {
+    if (!ENABLED) {
+      return 0;
+    }
+    long now = System.nanoTime();
+    histogram.record(now - since);
+    return now;
+  }
+
+  // notes that the given number of images were made
+  static void madeImages(int count) {
+    if (ENABLED) {
+      imagesMade += count;
+    }
+  }
+
+  // records a frame that started at the given time and drew the given
+  // number of tiles into the raster, along with the images made for it
+  static void frame(long since, int tilesDrawn) {
+    if (ENABLED) {
+      lap(scenes, since);
+      images.record(imagesMade);
+      drawn.record(tilesDrawn);
+      imagesMade = 0;
+    }
+  }
+
+  // notes the size of a board that was just made
+  static void board(int boardWidth, int boardHeight) {
+    if (ENABLED) {
+      width = boardWidth;
+      height = boardHeight;
+    }
+  }
+
+  // every histogram, one per line, below the board size
+  static String report() {
+    StringBuilder out = new StringBuilder();
+    out.append(String.format("board        %dx%d (%d tiles)%n", width, height, width * height));
+    out.append("scene        ").append(scenes.summary()).append('\n');
+    out.append("propagation  ").append(propagations.summary()).append('\n');
+    out.append("click        ").append(clicks.summary()).append('\n');
+    out.append("key          ").append(keys.summary()).append('\n');
+    out.append("tiles        ").append(tiles.summary()).append('\n');
+    out.append("tree         ").append(trees.summary()).append('\n');
+    out.append("edges        ").append(edges.summary()).append('\n');
+    out.append("kruskal      ").append(kruskals.summary()).append('\n');
+    out.append("wiring       ").append(wiring.summary()).append('\n');
+    out.append("scrambling   ").append(scrambling.summary()).append('\n');
+    out.append("visited      ").append(visited.countSummary()).append('\n');
+    out.append("images       ").append(images.countSummary()).append('\n');
+    out.append("drawn        ").append(drawn.countSummary()).append('\n');
+    return out.toString();
+  }
+
+  // adds the report to the end of the given file, under the time it was made
+  static void dump(Path path) {
+    String text = "lightemall metrics " + java.time.Instant.now() + "\n" + report();
+    try {
+      Files.write(path, text.getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+          StandardOpenOption.APPEND);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // shows the metrics through the platform's JMX server, unless they already
+  // are
+  static void register() {
+    try {
+      ObjectName name = new ObjectName("lightemall:type=Metrics");
+      if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+        ManagementFactory.getPlatformMBeanServer().registerMBean(new Metrics(), name);
+      }
+    }
+    catch (JMException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  // forgets everything recorded so far
+  static void clear() {
+    LatencyHistogram[] all = new LatencyHistogram[] { scenes, propagations, clicks, keys,
+        kruskals, edges, tiles, trees, wiring, scrambling, visited, images, drawn };
+    for (LatencyHistogram histogram : all) {
+      histogram.reset();
+    }
+    imagesMade = 0;
+  }
+
+  public String getReport() {
+    return report();
+  }
+
+  public int getBoardTiles() {
+    return width * height;
+  }
+
+  public long getFrames() {
+    return scenes.count;
+  }
+
+  public void reset() {
+    clear();
+  }
+}
@@ -0,0 +1,14 @@
+// what Metrics shows through JMX, such as in jconsole under lightemall
+public interface MetricsMBean {
+  // every histogram, one line each, as Metrics.report makes it
+  String getReport();
+
+  // the number of tiles on the last board made
+  int getBoardTiles();
+
+  // the number of frames drawn
+  long getFrames();
+
+  // forgets everything recorded so far
+  void reset();
+}
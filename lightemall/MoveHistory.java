@@ -0,0 +1,72 @@
+// the moves that can be undone and redone, newest last, as packed ints in a
+// ring buffer: the tile or direction a move applies to, shifted left twice
+// above the kind of move (see MoveJournal)
+// once the buffer is full, every new move forgets the oldest one, so undo
+// and redo never allocate and always take constant time
+class MoveHistory {
+  int[] moves;
+  // where the next move goes
+  int head;
+  // the number of moves before the head that can be undone, and after it
+  // that can be redone
+  int undoable;
+  int redoable;
+
+  MoveHistory(int capacity) {
+    this.moves = new int[capacity];
+  }
+
+  // the move of the given kind on the given tile or direction, packed
+  static int pack(int kind, int value) {
+    return value << 2 | kind;
+  }
+
+  // the kind of the given packed move
+  static int kind(int move) {
+    return move & 3;
+  }
+
+  // the tile or direction of the given packed move
+  static int value(int move) {
+    return move >>> 2;
+  }
+
+  // remembers a new move, forgetting every move that could have been redone
+  void push(int kind, int value) {
+    this.moves[this.head] = pack(kind, value);
+    this.head = (this.head + 1) % this.moves.length;
+    this.undoable = Math.min(this.undoable + 1, this.moves.length);
+    this.redoable = 0;
+  }
+
+  // steps back over the last move and returns it, or -1 if there is none
+  int undo() {
+    if (this.undoable == 0) {
+      return -1;
+    }
+    this.head = (this.head + this.moves.length - 1) % this.moves.length;
+    this.undoable -= 1;
+    this.redoable += 1;
+    return this.moves[this.head];
+  }
+
+  // steps forward over the last move undone and returns it, or -1 if there is
+  // none
+  int redo() {
+    if (this.redoable == 0) {
+      return -1;
+    }
+    int move = this.moves[this.head];
+    this.head = (this.head + 1) % this.moves.length;
+    this.undoable += 1;
+    this.redoable -= 1;
+    return move;
+  }
+
+  // forgets every move
+  void clear() {
+    this.head = 0;
+    this.undoable = 0;
+    this.redoable = 0;
+  }
+}
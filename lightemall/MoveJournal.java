@@ -0,0 +1,295 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+// a game saved as it goes: an append-only log of every move, next to a
+// snapshot of the whole board that is taken again every so many moves
+// every move is one varint, the tile or direction it applies to shifted
+// left twice above the kind of move; a run of clock ticks is one move too
+// the snapshot is a BoardFile followed by the length the log had when it
+// was taken, so resuming loads it and replays only the moves after it, and
+// by the radius of the board (see PowerRadius), which depends on the tree
+// the board was wired from and cannot be worked out from scrambled tiles
+// moves are kept in a buffer and written out when it fills up, on every
+// snapshot, and every FLUSH_TICKS ticks of the clock
+class MoveJournal {
+  // the kinds of move
+  static final int ROTATE = 0;
+  static final int STATION = 1;
+  static final int TICK = 2;
+  static final int ROTATE_BACK = 3;
+  // how many ticks the clock may run before the buffer is written out
+  static final int FLUSH_TICKS = 10;
+
+  Path path;
+  Path snapshotPath;
+  FileChannel log;
+  // the game being recorded
+  GameCore core;
+  // moves waiting to be written, and how many bytes of them there are
+  byte[] buffer;
+  int buffered;
+  // the length of the log, not counting the buffer
+  long length;
+  // the clicks and the clock of the game
+  int clicks;
+  int time;
+  // how far power reaches from the station on the board in radius mode
+  int radius;
+  // ticks not yet recorded as a move
+  int pendingTicks;
+  // moves since the last snapshot, and how many there may be before the next
+  int moves;
+  int snapshotEvery;
+
+  MoveJournal(Path path, FileChannel log, GameCore core, int snapshotEvery) throws IOException {
+    this.path = path;
+    this.snapshotPath = path.resolveSibling(path.getFileName() + ".snap");
+    this.log = log;
+    this.core = core;
+    this.buffer = new byte[4096];
+    this.length = log.size();
+    this.snapshotEvery = snapshotEvery;
+  }
+
+  // starts a new journal at the given path for the given game, taking the
+  // first snapshot straight away
+  static MoveJournal start(Path path, GameCore core, int clicks, int time, int radius,
+      int snapshotEvery) {
+    try {
+      MoveJournal journal = new MoveJournal(path, FileChannel.open(path,
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.TRUNCATE_EXISTING), core, snapshotEvery);
+      journal.clicks = clicks;
+      journal.time = time;
+      journal.radius = radius;
+      journal.snapshot();
+      return journal;
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // picks up the journal at the given path where it left off: its last
+  // snapshot is loaded onto a packed board and the moves after it are
+  // replayed; a move cut short by a crash is dropped
+  static MoveJournal resume(Path path, int snapshotEvery) {
+    try {
+      MappedBoard saved = MappedBoard.open(path.resolveSibling(path.getFileName() + ".snap"),
+          FileChannel.MapMode.READ_ONLY);
+      PackedBoard board = new PackedBoard(saved.width, saved.height);
+      for (int i = 0; i < board.cells.length; i++) {
+        board.setMask(i, saved.mask(i));
+      }
+      board.moveStation(0, saved.station);
+      ByteBuffer offset = ByteBuffer.allocate(12);
+      saved.channel.read(offset, BoardFile.size(saved.width, saved.height));
+      saved.close();
+      FileChannel log = FileChannel.open(path, StandardOpenOption.READ,
+          StandardOpenOption.WRITE);
+      MoveJournal journal = new MoveJournal(path, log, new GameCore(board, saved.station),
+          snapshotEvery);
+      journal.clicks = saved.clicks;
+      journal.time = saved.time;
+      journal.radius = offset.getInt(8);
+      long end = journal.replay(offset.getLong(0));
+      log.truncate(end);
+      journal.length = end;
+      log.position(end);
+      return journal;
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // applies every whole move in the log from the given position to the game,
+  // returning where the last one ends; a move that does not fit the board
+  // can only be garbage left by a crash, so the log is taken to end there
+  long replay(long from) throws IOException {
+    this.log.position(from);
+    InputStream in = new BufferedInputStream(Channels.newInputStream(this.log));
+    long end = from;
+    long at = from;
+    long move = 0;
+    int shift = 0;
+    for (int b = in.read(); b >= 0; b = in.read()) {
+      at += 1;
+      move |= (long) (b & 127) << shift;
+      shift += 7;
+      if (b < 128) {
+        if (!this.apply((int) (move & 3), move >>> 2)) {
+          break;
+        }
+        end = at;
+        move = 0;
+        shift = 0;
+      }
+    }
+    return end;
+  }
+
+  // plays one move of the given kind on the game, returning false without
+  // playing it if it is off the board
+  boolean apply(int kind, long value) {
+    int tiles = this.core.grid.width() * this.core.grid.height();
+    if (kind == TICK ? value > Integer.MAX_VALUE
+        : kind == STATION ? value > 3 : value >= tiles) {
+      return false;
+    }
+    if (kind == ROTATE) {
+      this.core.rotate((int) value);
+      this.clicks += 1;
+    }
+    else if (kind == ROTATE_BACK) {
+      this.core.rotateBack((int) value);
+      this.clicks -= 1;
+    }
+    else if (kind == STATION) {
+      this.core.moveStation(1 << (int) value);
+    }
+    else {
+      this.time += (int) value;
+    }
+    this.moves += 1;
+    return true;
+  }
+
+  // records that the tile at the given index was rotated
+  void rotated(int index) {
+    this.clicks += 1;
+    this.append(ROTATE, index);
+  }
+
+  // records that the tile at the given index was rotated back by an undo
+  void rotatedBack(int index) {
+    this.clicks -= 1;
+    this.append(ROTATE_BACK, index);
+  }
+
+  // records that the power station moved in the given direction (see
+  // TileGrid)
+  void stationMoved(int dir) {
+    this.append(STATION, Integer.numberOfTrailingZeros(dir));
+  }
+
+  // records one tick of the clock
+  void ticked() {
+    this.time += 1;
+    this.pendingTicks += 1;
+    if (this.pendingTicks >= FLUSH_TICKS) {
+      this.flush();
+    }
+  }
+
+  // records that a new board with the given radius was dealt, with the
+  // clicks and the clock back at zero
+  void restarted(int radius) {
+    this.radius = radius;
+    this.clicks = 0;
+    this.time = 0;
+    this.pendingTicks = 0;
+    this.snapshot();
+  }
+
+  // adds a move to the buffer after the ticks before it, taking a snapshot
+  // if it is time for one
+  void append(int kind, int value) {
+    this.putTicks();
+    this.put(kind, value);
+    if (this.moves >= this.snapshotEvery) {
+      this.snapshot();
+    }
+  }
+
+  // adds the ticks not yet recorded to the buffer, as one move
+  void putTicks() {
+    if (this.pendingTicks > 0) {
+      this.put(TICK, this.pendingTicks);
+      this.pendingTicks = 0;
+    }
+  }
+
+  // adds one move to the buffer, as a varint
+  void put(int kind, int value) {
+    if (this.buffered + 10 > this.buffer.length) {
+      this.write();
+    }
+    long move = (long) value << 2 | kind;
+    while (move >= 128) {
+      this.buffer[this.buffered++] = (byte) (move & 127 | 128);
+      move >>>= 7;
+    }
+    this.buffer[this.buffered++] = (byte) move;
+    this.moves += 1;
+  }
+
+  // writes the buffered moves to the end of the log
+  void write() {
+    try {
+      ByteBuffer bytes = ByteBuffer.wrap(this.buffer, 0, this.buffered);
+      while (bytes.hasRemaining()) {
+        this.length += this.log.write(bytes, this.length);
+      }
+      this.buffered = 0;
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // writes out every move so far, ticks included
+  void flush() {
+    this.putTicks();
+    this.write();
+  }
+
+  // saves the whole board along with the length of the log, replacing the
+  // last snapshot only once the new one is complete and on the disk, so a
+  // crash can never leave the snapshot renamed but empty
+  void snapshot() {
+    this.flush();
+    this.moves = 0;
+    Path temp = this.snapshotPath.resolveSibling(this.snapshotPath.getFileName() + ".tmp");
+    try {
+      this.log.force(false);
+      FileChannel file = FileChannel.open(temp, StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+      DataOutputStream data = new DataOutputStream(
+          new BufferedOutputStream(Channels.newOutputStream(file)));
+      BoardFile.write(this.core.grid, this.core.station, 0, this.clicks, this.time, data);
+      data.writeLong(this.length);
+      data.writeInt(this.radius);
+      data.flush();
+      file.force(true);
+      data.close();
+      Files.move(temp, this.snapshotPath, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // writes out every move so far and lets go of the log
+  void close() {
+    this.flush();
+    try {
+      this.log.close();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
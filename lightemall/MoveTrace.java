@@ -0,0 +1,144 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+// every click, key and tick a game received, in order, along with the seed
+// and size it was made with, so the session can be played again exactly
+// saved as text: a first line "lightemall-trace seed width height", then
+// one event per line, "click x y", "key name" or "tick"
+class MoveTrace {
+  // the kinds of event
+  static final int CLICK = 0;
+  static final int KEY = 1;
+  static final int TICK = 2;
+
+  long seed;
+  int width;
+  int height;
+  // per event, its kind, where a click was and which key was pressed
+  int[] kinds;
+  int[] xs;
+  int[] ys;
+  String[] keys;
+  int size;
+
+  MoveTrace(long seed, int width, int height) {
+    this.seed = seed;
+    this.width = width;
+    this.height = height;
+    this.kinds = new int[16];
+    this.xs = new int[16];
+    this.ys = new int[16];
+    this.keys = new String[16];
+  }
+
+  // the game this trace starts from
+  LightEmAll newGame() {
+    return new LightEmAll(this.width, this.height, new Random(this.seed));
+  }
+
+  // adds an event, making room for it if needed
+  void add(int kind, int x, int y, String key) {
+    if (this.size == this.kinds.length) {
+      this.kinds = Arrays.copyOf(this.kinds, this.size * 2);
+      this.xs = Arrays.copyOf(this.xs, this.size * 2);
+      this.ys = Arrays.copyOf(this.ys, this.size * 2);
+      this.keys = Arrays.copyOf(this.keys, this.size * 2);
+    }
+    this.kinds[this.size] = kind;
+    this.xs[this.size] = x;
+    this.ys[this.size] = y;
+    this.keys[this.size] = key;
+    this.size += 1;
+  }
+
+  void click(int x, int y) {
+    this.add(CLICK, x, y, null);
+  }
+
+  void key(String key) {
+    this.add(KEY, 0, 0, key);
+  }
+
+  void tick() {
+    this.add(TICK, 0, 0, null);
+  }
+
+  // a made-up session of the given number of events on a new game: mostly
+  // clicks on tiles in view, with some ticks, moves of the power station
+  // and undos
+  static MoveTrace random(long seed, int width, int height, int count, Random rand) {
+    MoveTrace trace = new MoveTrace(seed, width, height);
+    int right = Math.min(500, width * 60);
+    int bottom = Math.min(500, height * 60);
+    String[] keys = new String[] { "left", "right", "up", "down", "z", "y" };
+    for (int i = 0; i < count; i++) {
+      int roll = rand.nextInt(100);
+      if (roll < 80) {
+        trace.click(rand.nextInt(right), rand.nextInt(bottom));
+      }
+      else if (roll < 90) {
+        trace.tick();
+      }
+      else {
+        trace.key(keys[rand.nextInt(keys.length)]);
+      }
+    }
+    return trace;
+  }
+
+  // saves this trace to the given file
+  void write(Path path) {
+    try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+      out.write("lightemall-trace " + this.seed + " " + this.width + " " + this.height + "\n");
+      for (int i = 0; i < this.size; i++) {
+        if (this.kinds[i] == CLICK) {
+          out.write("click " + this.xs[i] + " " + this.ys[i] + "\n");
+        }
+        else if (this.kinds[i] == KEY) {
+          out.write("key " + this.keys[i] + "\n");
+        }
+        else {
+          out.write("tick\n");
+        }
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // the trace saved in the given file
+  static MoveTrace read(Path path) {
+    try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+      String[] header = in.readLine().split(" ");
+      if (!header[0].equals("lightemall-trace")) {
+        throw new IllegalArgumentException("not a trace: " + path);
+      }
+      MoveTrace trace = new MoveTrace(Long.parseLong(header[1]), Integer.parseInt(header[2]),
+          Integer.parseInt(header[3]));
+      for (String line = in.readLine(); line != null; line = in.readLine()) {
+        String[] words = line.split(" ");
+        if (words[0].equals("click")) {
+          trace.click(Integer.parseInt(words[1]), Integer.parseInt(words[2]));
+        }
+        else if (words[0].equals("key")) {
+          trace.key(words[1]);
+        }
+        else if (words[0].equals("tick")) {
+          trace.tick();
+        }
+      }
+      return trace;
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,52 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+// writes streamed rows to an output stream as four-bit connector masks, two
+// tiles per byte with the first tile in the low half, row after row with no
+// padding between rows
+class NibbleRowWriter implements RowSink {
+  OutputStream out;
+  // the low half of a byte that is still waiting for its high half, or -1
+  int pending;
+  // the number of tiles written so far
+  long written;
+
+  NibbleRowWriter(OutputStream out) {
+    this.out = out;
+    this.pending = -1;
+    this.written = 0;
+  }
+
+  public void row(int row, byte[] masks) {
+    try {
+      for (int c = 0; c < masks.length; c++) {
+        if (this.pending < 0) {
+          this.pending = masks[c] & 15;
+        }
+        else {
+          this.out.write(this.pending | (masks[c] & 15) << 4);
+          this.pending = -1;
+        }
+      }
+      this.written += masks.length;
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  // writes out the last half-filled byte, if there is one
+  void finish() {
+    try {
+      if (this.pending >= 0) {
+        this.out.write(this.pending);
+        this.pending = -1;
+      }
+      this.out.flush();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,186 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+// a board stored as one byte per tile, indexed by col * height + row
+// the low four bits of a tile are its connectors (see TileGrid), followed by
+// whether it holds the power station and whether it is powered
+class PackedBoard implements TileGrid {
+  // the flag bits of a tile, above its connectors
+  static final int STATION = 16;
+  static final int POWERED = 32;
+
+  int width;
+  int height;
+  byte[] cells;
+
+  // an empty board with no wires and the power station at the origin
+  PackedBoard(int width, int height) {
+    this.width = width;
+    this.height = height;
+    this.cells = new byte[width * height];
+    this.cells[0] = STATION;
+  }
+
+  // packs the given column-major board of GamePieces
+  PackedBoard(ArrayList<ArrayList<GamePiece>> board) {
+    this.width = board.size();
+    this.height = board.get(0).size();
+    this.cells = new byte[this.width * this.height];
+    for (int c = 0; c < this.width; c++) {
+      for (int r = 0; r < this.height; r++) {
+        GamePiece gp = board.get(c).get(r);
+        this.cells[c * this.height + r] = (byte) (gp.mask() | (gp.powerStation ? STATION : 0)
+            | (gp.powered ? POWERED : 0));
+      }
+    }
+  }
+
+  // the index of the tile at the given column and row
+  int index(int col, int row) {
+    return col * this.height + row;
+  }
+
+  // the number of columns on the board
+  public int width() {
+    return this.width;
+  }
+
+  // the number of rows on the board
+  public int height() {
+    return this.height;
+  }
+
+  // the connector bits of the tile at the given index
+  public int mask(int index) {
+    return this.cells[index] & 15;
+  }
+
+  // records whether the tile at the given index is connected to the power
+  // station
+  public void setPowered(int index, boolean powered) {
+    if (powered) {
+      this.cells[index] |= POWERED;
+    }
+    else {
+      this.cells[index] &= ~POWERED;
+    }
+  }
+
+  // is the tile at the given index powered?
+  public boolean isPowered(int index) {
+    return (this.cells[index] & POWERED) != 0;
+  }
+
+  // does the tile at the given index hold the power station?
+  public boolean isStation(int index) {
+    return (this.cells[index] & STATION) != 0;
+  }
+
+  // takes every wire off the board and puts the power station back at the
+  // origin, with no tile powered
+  void clear() {
+    Arrays.fill(this.cells, (byte) 0);
+    this.cells[0] = STATION;
+  }
+
+  // a copy of this board
+  PackedBoard copy() {
+    PackedBoard copy = new PackedBoard(this.width, this.height);
+    System.arraycopy(this.cells, 0, copy.cells, 0, this.cells.length);
+    return copy;
+  }
+
+  // replaces the connectors of the tile at the given index
+  void setMask(int index, int mask) {
+    this.cells[index] = (byte) ((this.cells[index] & ~15) | mask);
+  }
+
+  // moves the power station from one tile to another
+  public void moveStation(int from, int to) {
+    this.cells[from] &= ~STATION;
+    this.cells[to] |= STATION;
+  }
+
+  // rotates the tile at the given index in a clockwise direction
+  public void rotate(int index) {
+    this.setMask(index, rotateMask(this.mask(index)));
+  }
+
+  // wires the two adjacent tiles at the given indices to each other
+  void connect(int from, int to) {
+    if (to == from + 1) {
+      this.cells[from] |= BOTTOM;
+      this.cells[to] |= TOP;
+    }
+    else if (to == from - 1) {
+      this.cells[from] |= TOP;
+      this.cells[to] |= BOTTOM;
+    }
+    else if (to == from + this.height) {
+      this.cells[from] |= RIGHT;
+      this.cells[to] |= LEFT;
+    }
+    else {
+      this.cells[from] |= LEFT;
+      this.cells[to] |= RIGHT;
+    }
+  }
+
+  // a board wired from a spanning tree made by the given generator, then
+  // scrambled
+  static PackedBoard generate(int width, int height, Random rand, BoardGenerator generator) {
+    PackedBoard board = new PackedBoard(width, height);
+    board.regenerate(rand, generator, new int[width * height - 1], new int[width * height - 1]);
+    return board;
+  }
+
+  // wires this board from scratch the way generate does, with the power
+  // station back at the origin, using the given arrays of width * height - 1
+  // edges as scratch space
+  void regenerate(Random rand, BoardGenerator generator, int[] from, int[] to) {
+    this.clear();
+    generator.spanningTree(this.width, this.height, rand, from, to);
+    for (int i = 0; i < from.length; i++) {
+      this.connect(from[i], to[i]);
+    }
+    this.randomize(rand);
+  }
+
+  // rotates every tile a random number of times, drawing from the given
+  // Random in the same order as LightEmAll.randomize
+  void randomize(Random rand) {
+    int random = rand.nextInt(4);
+    for (int i = 0; i < this.cells.length; i++) {
+      for (int r = 0; r < random; r++) {
+        this.rotate(i);
+      }
+      random = rand.nextInt(4);
+    }
+  }
+
+  // a GamePiece showing the tile at the given column and row
+  GamePiece piece(int col, int row) {
+    int cell = this.cells[this.index(col, row)];
+    return new GamePiece(col, row, (cell & LEFT) != 0, (cell & RIGHT) != 0, (cell & TOP) != 0,
+        (cell & BOTTOM) != 0, (cell & STATION) != 0, (cell & POWERED) != 0);
+  }
+
+  // unpacks this board into a column-major board of GamePieces
+  ArrayList<ArrayList<GamePiece>> unpack() {
+    ArrayList<ArrayList<GamePiece>> board = new ArrayList<ArrayList<GamePiece>>();
+    for (int c = 0; c < this.width; c++) {
+      ArrayList<GamePiece> column = new ArrayList<GamePiece>();
+      for (int r = 0; r < this.height; r++) {
+        column.add(this.piece(c, r));
+      }
+      board.add(column);
+    }
+    return board;
+  }
+
+  // the given connector bits after a clockwise rotation
+  static int rotateMask(int mask) {
+    return ((mask << 1) | (mask >> 3)) & 15;
+  }
+}
@@ -0,0 +1,14 @@
+// writes streamed rows to the given board
+class PackedRowSink implements RowSink {
+  PackedBoard board;
+
+  PackedRowSink(PackedBoard board) {
+    this.board = board;
+  }
+
+  public void row(int row, byte[] masks) {
+    for (int c = 0; c < masks.length; c++) {
+      this.board.setMask(this.board.index(c, row), masks[c]);
+    }
+  }
+}
@@ -0,0 +1,181 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// solves a board using every core: the board is cut into stripes of columns,
+// and the stripes narrow down the turns of their own tiles at the same time,
+// each reading the tiles along its edges from the stripes next to it; rounds
+// are repeated for the stripes whose neighbors changed along their edges
+// until nothing changes, and only then does a Solver rule out loops and
+// guess what is left, joining the wires the stripes fixed in one pass and
+// queueing only the tiles that still have a choice
+// the turns of a tile only ever shrink and every tile is written by one
+// stripe only, so a stripe reading a neighbor mid-round sees at worst a
+// wider set of turns than the final one, which is never wrong, only weaker
+class ParallelSolver {
+  int width;
+  int height;
+  // the sequential solver whose domains the stripes narrow down, and that
+  // finishes the job
+  Solver solver;
+  ForkJoinPool pool;
+  // the first column of every stripe, and one past the last column of the
+  // last one
+  int[] starts;
+  // per stripe, whether it has to run in the next round
+  boolean[] wake;
+  boolean[] woken;
+  // the queue of every stripe, kept from round to round, and the tiles
+  // waiting in the queue of their stripe
+  int[][] queues;
+  boolean[] pending;
+  // whether a stripe ran out of turns for one of its tiles
+  boolean failed;
+  int rounds;
+
+  ParallelSolver(TileGrid grid, ForkJoinPool pool) {
+    this.width = grid.width();
+    this.height = grid.height();
+    this.solver = new Solver(grid, false);
+    this.pool = pool;
+    int count = Math.max(1, Math.min(this.width, 4 * pool.getParallelism()));
+    this.starts = new int[count + 1];
+    for (int s = 0; s <= count; s++) {
+      this.starts[s] = (int) ((long) this.width * s / count);
+    }
+    this.wake = new boolean[count];
+    this.woken = new boolean[count];
+    this.queues = new int[count][];
+    for (int s = 0; s < count; s++) {
+      this.queues[s] = new int[(this.starts[s + 1] - this.starts[s]) * this.height];
+    }
+    this.pending = new boolean[this.width * this.height];
+  }
+
+  // narrows the board down on every core, then lets the solver finish it,
+  // returning whether there is a solution
+  boolean solve() {
+    java.util.Arrays.fill(this.wake, true);
+    boolean any = true;
+    while (any && !this.failed) {
+      boolean[] running = this.wake;
+      this.wake = this.woken;
+      this.woken = running;
+      java.util.Arrays.fill(this.wake, false);
+      this.pool.invoke(new StripeRound(this, running, this.rounds == 0, 0, running.length));
+      this.rounds += 1;
+      any = false;
+      for (boolean w : this.wake) {
+        any = any || w;
+      }
+    }
+    return !this.failed && this.solver.adoptNarrowed() && this.solver.solve();
+  }
+
+  // narrows the turns of the tiles in the given stripe until they agree with
+  // each other and with what the stripes next to it show along its edges;
+  // after the first round, only the columns along its edges can be affected
+  // by its neighbors
+  void narrowStripe(int stripe, boolean whole) {
+    Solver s = this.solver;
+    int first = this.starts[stripe] * this.height;
+    int end = this.starts[stripe + 1] * this.height;
+    int[] queue = this.queues[stripe];
+    int head = 0;
+    int size = 0;
+    for (int tile = first; tile < end; tile++) {
+      if (whole || tile < first + this.height || tile >= end - this.height) {
+        queue[size++] = tile;
+        this.pending[tile] = true;
+      }
+    }
+    while (size > 0) {
+      int tile = queue[head];
+      head = (head + 1) % queue.length;
+      size -= 1;
+      this.pending[tile] = false;
+      int turns = this.revise(tile);
+      if (turns == s.domain[tile]) {
+        continue;
+      }
+      s.domain[tile] = (byte) turns;
+      if (turns == 0) {
+        this.failed = true;
+        return;
+      }
+      for (int k = 0; k < 4; k++) {
+        int next = s.neighbor(tile, 1 << k);
+        if (next < 0) {
+          continue;
+        }
+        else if (next < first) {
+          this.wake[stripe - 1] = true;
+        }
+        else if (next >= end) {
+          this.wake[stripe + 1] = true;
+        }
+        else if (!this.pending[next]) {
+          this.pending[next] = true;
+          queue[(head + size) % queue.length] = next;
+          size += 1;
+        }
+      }
+    }
+  }
+
+  // the turns the given tile has left once its neighbors are taken into
+  // account
+  int revise(int tile) {
+    Solver s = this.solver;
+    int mask = s.masks[tile];
+    int turns = s.domain[tile];
+    for (int k = 0; k < 4; k++) {
+      int next = s.neighbor(tile, 1 << k);
+      if (next < 0) {
+        continue;
+      }
+      int back = 1 << (k + 2) % 4;
+      int nextMask = s.masks[next];
+      int nextTurns = s.domain[next];
+      if ((Solver.common(nextMask, nextTurns) & back) != 0) {
+        turns &= Solver.TURNS_WITH[mask][k];
+      }
+      else if ((Solver.possible(nextMask, nextTurns) & back) == 0) {
+        turns &= ~Solver.TURNS_WITH[mask][k];
+      }
+    }
+    return turns;
+  }
+}
+
+// one round of narrowing, splitting the stripes that have to run between
+// the workers of the pool
+class StripeRound extends RecursiveAction {
+  private static final long serialVersionUID = 1L;
+
+  ParallelSolver owner;
+  boolean[] running;
+  // whether this is the first round, where every tile has to be looked at
+  boolean whole;
+  int from;
+  int to;
+
+  StripeRound(ParallelSolver owner, boolean[] running, boolean whole, int from, int to) {
+    this.owner = owner;
+    this.running = running;
+    this.whole = whole;
+    this.from = from;
+    this.to = to;
+  }
+
+  protected void compute() {
+    if (this.to - this.from == 1) {
+      if (this.running[this.from]) {
+        this.owner.narrowStripe(this.from, this.whole);
+      }
+      return;
+    }
+    int middle = (this.from + this.to) / 2;
+    invokeAll(new StripeRound(this.owner, this.running, this.whole, this.from, middle),
+        new StripeRound(this.owner, this.running, this.whole, middle, this.to));
+  }
+}
@@ -0,0 +1,249 @@
+import java.util.Arrays;
+
+// incrementally keeps track of which tiles are connected to the power station
+// every lit tile remembers the neighbor it was lit from, so the lit tiles form
+// a tree rooted at the power station; when a tile rotates, only the subtree
+// hanging off of that tile has to be invalidated and re-lit
+class PowerGrid {
+  // parent value of a tile that is not connected to the power station
+  static final int UNLIT = -2;
+  // parent value of the power station itself
+  static final int ROOT = -1;
+
+  TileGrid grid;
+  int width;
+  int height;
+  // the neighbor each lit tile was reached from, ROOT or UNLIT
+  int[] parent;
+  // scratch space for flood fills and invalidated subtrees
+  int[] queue;
+  int[] subtree;
+  // one bit per tile that was lit before being invalidated and has not been
+  // lit again yet; the grid is only told about the tiles whose power really
+  // changed once the invalidated tiles have been lit again, so a tile that
+  // stays lit is never marked as changed
+  long[] stale;
+  // the index of the power station
+  int station;
+  // the number of tiles currently connected to the power station
+  int poweredCount;
+  // the number of tiles looked at by propagation so far, only counted when
+  // metrics are on
+  long visited;
+
+  PowerGrid(TileGrid grid) {
+    this.grid = grid;
+    this.width = grid.width();
+    this.height = grid.height();
+    this.parent = new int[this.width * this.height];
+    this.queue = new int[this.width * this.height];
+    this.subtree = new int[this.width * this.height];
+    this.stale = new long[(this.width * this.height + 63) >> 6];
+    Arrays.fill(this.parent, UNLIT);
+    this.station = 0;
+    this.poweredCount = 0;
+  }
+
+  // the number of tiles on the board
+  int size() {
+    return this.parent.length;
+  }
+
+  // is the tile at the given index connected to the power station?
+  boolean isPowered(int index) {
+    return this.parent[index] != UNLIT;
+  }
+
+  // is every tile on the board connected to the power station?
+  boolean allPowered() {
+    return this.poweredCount == this.parent.length;
+  }
+
+  // forgets every lit tile without telling the grid, for when every tile of
+  // the grid was replaced by one that is not powered
+  void clear() {
+    Arrays.fill(this.parent, UNLIT);
+    Arrays.fill(this.stale, 0);
+    this.poweredCount = 0;
+  }
+
+  // throws away everything that is known and lights the board from scratch,
+  // starting at the power station at the given index
+  // allocates nothing, and only tells the grid about tiles whose power changed
+  void relight(int station) {
+    for (int i = 0; i < this.parent.length; i++) {
+      if (this.parent[i] != UNLIT) {
+        this.parent[i] = UNLIT;
+        this.stale[i >> 6] |= 1L << i;
+      }
+    }
+    this.poweredCount = 0;
+    this.station = station;
+    this.light(station, ROOT);
+    this.flood(station);
+    for (int w = 0; w < this.stale.length; w++) {
+      for (long bits = this.stale[w]; bits != 0; bits &= bits - 1) {
+        this.grid.setPowered(w << 6 | Long.numberOfTrailingZeros(bits), false);
+      }
+      this.stale[w] = 0;
+    }
+  }
+
+  // moves the power station to the given neighbor it is wired to, in
+  // constant time: the neighbor is lit along with the station, so nothing
+  // changes but the root of the tree, and the old station now hangs off of
+  // the new one
+  void moveStation(int next) {
+    this.parent[this.station] = next;
+    this.parent[next] = ROOT;
+    this.station = next;
+  }
+
+  // makes the given lit tile the power station by turning around the path
+  // from it to the old one, without changing which tiles are lit
+  void reroot(int index) {
+    int prev = ROOT;
+    int tile = index;
+    while (tile != ROOT) {
+      int next = this.parent[tile];
+      this.parent[tile] = prev;
+      prev = tile;
+      tile = next;
+    }
+    this.station = index;
+  }
+
+  // updates the lit tiles after the tile at the given index has been rotated
+  // costs time proportional to the number of tiles whose power changes
+  void rotated(int index) {
+    if (this.parent[index] == UNLIT) {
+      // an unlit tile can only gain power, through one of its new connections
+      int from = this.litNeighbor(index);
+      if (from != UNLIT) {
+        this.light(index, from);
+        this.flood(index);
+      }
+      return;
+    }
+    // every tile lit through the rotated tile may have lost its power
+    int count = this.collectSubtree(index);
+    if (Metrics.ENABLED) {
+      this.visited += count;
+    }
+    for (int i = 0; i < count; i++) {
+      this.parent[this.subtree[i]] = UNLIT;
+      this.stale[this.subtree[i] >> 6] |= 1L << this.subtree[i];
+    }
+    this.poweredCount -= count;
+    // the power station lights itself again if it was part of the subtree
+    if (this.parent[this.station] == UNLIT) {
+      this.light(this.station, ROOT);
+      this.flood(this.station);
+    }
+    // re-light the invalidated tiles that are still connected from outside
+    for (int i = 0; i < count; i++) {
+      int tile = this.subtree[i];
+      if (this.parent[tile] == UNLIT) {
+        int from = this.litNeighbor(tile);
+        if (from != UNLIT) {
+          this.light(tile, from);
+          this.flood(tile);
+        }
+      }
+    }
+    // only now are the tiles that stayed dark told
+    for (int i = 0; i < count; i++) {
+      int tile = this.subtree[i];
+      if ((this.stale[tile >> 6] & 1L << tile) != 0) {
+        this.stale[tile >> 6] &= ~(1L << tile);
+        this.grid.setPowered(tile, false);
+      }
+    }
+  }
+
+  // collects the given lit tile and every tile lit through it into subtree,
+  // returning how many there are
+  int collectSubtree(int index) {
+    int count = 0;
+    this.subtree[count++] = index;
+    for (int i = 0; i < count; i++) {
+      int tile = this.subtree[i];
+      for (int dir = TileGrid.TOP; dir <= TileGrid.LEFT; dir <<= 1) {
+        int next = this.neighbor(tile, dir);
+        if (next >= 0 && this.parent[next] == tile) {
+          this.subtree[count++] = next;
+        }
+      }
+    }
+    return count;
+  }
+
+  // lights every unlit tile reachable from the given lit tile
+  void flood(int start) {
+    int head = 0;
+    int tail = 0;
+    this.queue[tail++] = start;
+    while (head < tail) {
+      int tile = this.queue[head++];
+      for (int dir = TileGrid.TOP; dir <= TileGrid.LEFT; dir <<= 1) {
+        int next = this.linked(tile, dir);
+        if (next >= 0 && this.parent[next] == UNLIT) {
+          this.light(next, tile);
+          this.queue[tail++] = next;
+        }
+      }
+    }
+  }
+
+  // marks the given tile as lit from the given parent, telling the grid
+  // unless the tile was lit before being invalidated
+  void light(int index, int from) {
+    if (Metrics.ENABLED) {
+      this.visited += 1;
+    }
+    this.parent[index] = from;
+    this.poweredCount += 1;
+    long bit = 1L << index;
+    if ((this.stale[index >> 6] & bit) != 0) {
+      this.stale[index >> 6] &= ~bit;
+    }
+    else {
+      this.grid.setPowered(index, true);
+    }
+  }
+
+  // finds a lit neighbor that the given tile is connected to, or UNLIT
+  int litNeighbor(int index) {
+    for (int dir = TileGrid.TOP; dir <= TileGrid.LEFT; dir <<= 1) {
+      int next = this.linked(index, dir);
+      if (next >= 0 && this.parent[next] != UNLIT) {
+        return next;
+      }
+    }
+    return UNLIT;
+  }
+
+  // the index of the neighbor the given tile is connected to in the given
+  // direction, or -1 if the wires do not meet
+  int linked(int index, int dir) {
+    if ((this.grid.mask(index) & dir) == 0) {
+      return -1;
+    }
+    int next = this.neighbor(index, dir);
+    if (next < 0 || (this.grid.mask(next) & opposite(dir)) == 0) {
+      return -1;
+    }
+    return next;
+  }
+
+  // the index of the neighbor of the given tile in the given direction, or -1
+  // if that would be off the board
+  int neighbor(int index, int dir) {
+    return TileGrid.neighbor(index, dir, this.width, this.height);
+  }
+
+  // the direction facing the given one
+  static int opposite(int dir) {
+    return ((dir << 2) | (dir >> 2)) & 15;
+  }
+}
@@ -0,0 +1,65 @@
+// the number of powered tiles in every block of 2^k by 2^k tiles, for every k
+// up to the one block that covers the whole board, kept up to date one tile
+// at a time so zoomed out views never have to count tiles
+class PowerPyramid {
+  int width;
+  int height;
+  // per level k >= 1, the number of blocks across and down
+  int[] cols;
+  int[] rows;
+  // per level k >= 1, the powered count of every block, column-major
+  int[][] counts;
+
+  PowerPyramid(int width, int height) {
+    this.width = width;
+    this.height = height;
+    int levels = 1;
+    while ((width - 1 >> levels - 1) > 0 || (height - 1 >> levels - 1) > 0) {
+      levels += 1;
+    }
+    this.cols = new int[levels];
+    this.rows = new int[levels];
+    this.counts = new int[levels][];
+    for (int k = 1; k < levels; k++) {
+      this.cols[k] = (width - 1 >> k) + 1;
+      this.rows[k] = (height - 1 >> k) + 1;
+      this.counts[k] = new int[this.cols[k] * this.rows[k]];
+    }
+  }
+
+  // the number of levels, including the level of single tiles
+  int levels() {
+    return this.counts.length;
+  }
+
+  // notes that the tile at the given column and row gained (1) or lost (-1)
+  // its power
+  void add(int col, int row, int delta) {
+    for (int k = 1; k < this.counts.length; k++) {
+      this.counts[k][(col >> k) * this.rows[k] + (row >> k)] += delta;
+    }
+  }
+
+  // forgets every powered tile
+  void clear() {
+    for (int k = 1; k < this.counts.length; k++) {
+      java.util.Arrays.fill(this.counts[k], 0);
+    }
+  }
+
+  // the number of powered tiles in the given block of the given level
+  int count(TileGrid grid, int level, int blockCol, int blockRow) {
+    if (level == 0) {
+      return grid.isPowered(blockCol * this.height + blockRow) ? 1 : 0;
+    }
+    return this.counts[level][blockCol * this.rows[level] + blockRow];
+  }
+
+  // the number of tiles in the given block of the given level, which is less
+  // than 4^level along the right and bottom edges of the board
+  int tiles(int level, int blockCol, int blockRow) {
+    int across = Math.min(1 << level, this.width - (blockCol << level));
+    int down = Math.min(1 << level, this.height - (blockRow << level));
+    return across * down;
+  }
+}
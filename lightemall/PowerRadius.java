@@ -0,0 +1,162 @@
+// how far power reaches from the power station when it only carries so many
+// hops along the wires: the hop distance of every tile within the radius,
+// found by a breadth-first search that stops expanding at the radius, so it
+// only ever looks at the tiles in reach and their neighbors, never the whole
+// board
+// the radius is half the diameter of the spanning tree a board is wired from,
+// plus one, so a station in the middle of the solved tree reaches every tile
+class PowerRadius {
+  // the number of shades tiles in reach are drawn with, nearest first
+  static final int SHADES = 3;
+
+  PowerGrid power;
+  int radius;
+  // the number of hops from the power station to every tile in reach, or -1
+  int[] dist;
+  // the tiles in reach, in the order they were found, which is also the order
+  // of their distances; only these have a distance to clear next time
+  int[] reached;
+  int count;
+  // whether the board or the station changed since the distances were found
+  boolean stale;
+
+  PowerRadius(PowerGrid power, int radius) {
+    this.power = power;
+    this.radius = radius;
+    this.dist = new int[power.size()];
+    java.util.Arrays.fill(this.dist, -1);
+    this.reached = new int[power.size()];
+    this.count = 0;
+    this.stale = true;
+  }
+
+  // finds the distance of every tile within the radius of the power station
+  // at the given index, clearing only the tiles that were in reach before
+  void compute(int station) {
+    for (int i = 0; i < this.count; i++) {
+      this.dist[this.reached[i]] = -1;
+    }
+    this.dist[station] = 0;
+    this.reached[0] = station;
+    this.count = 1;
+    for (int head = 0; head < this.count; head++) {
+      int tile = this.reached[head];
+      int d = this.dist[tile];
+      if (d == this.radius) {
+        // everything after this tile is at the radius too
+        break;
+      }
+      for (int dir = TileGrid.TOP; dir <= TileGrid.LEFT; dir <<= 1) {
+        int next = this.power.linked(tile, dir);
+        if (next >= 0 && this.dist[next] < 0) {
+          this.dist[next] = d + 1;
+          this.reached[this.count++] = next;
+        }
+      }
+    }
+    this.stale = false;
+  }
+
+  // finds the distances again if anything changed since they were found
+  void refresh(int station) {
+    if (this.stale) {
+      this.compute(station);
+    }
+  }
+
+  // notes that the tile at the given index was rotated; only a tile in reach,
+  // or next to one, can change what is in reach
+  void rotated(int index) {
+    if (this.stale || this.dist[index] >= 0) {
+      this.stale = true;
+      return;
+    }
+    for (int dir = TileGrid.TOP; dir <= TileGrid.LEFT; dir <<= 1) {
+      int next = this.power.neighbor(index, dir);
+      if (next >= 0 && this.dist[next] >= 0) {
+        this.stale = true;
+        return;
+      }
+    }
+  }
+
+  // notes that the board or the power station changed
+  void changed() {
+    this.stale = true;
+  }
+
+  // a new radius, for a newly generated board
+  void setRadius(int radius) {
+    this.radius = radius;
+    this.stale = true;
+  }
+
+  // is the tile at the given index within the radius of the power station?
+  boolean inReach(int index) {
+    return this.dist[index] >= 0;
+  }
+
+  // which shade the tile at the given index, in reach, is drawn with, from 0
+  // next to the station to SHADES - 1 at the radius
+  int shade(int index) {
+    return SHADES * this.dist[index] / (this.radius + 1);
+  }
+
+  // is every tile within the radius of the power station?
+  boolean allInReach() {
+    return this.count == this.dist.length;
+  }
+
+  // the radius for a board wired from the spanning tree with the given edges
+  // over the given number of tiles: half its diameter, rounded down, plus one
+  static int radiusOf(int tiles, int[] from, int[] to) {
+    return diameter(tiles, from, to) / 2 + 1;
+  }
+
+  // the most hops between any two tiles of the spanning tree with the given
+  // edges, found with two breadth-first searches: the tile farthest from any
+  // tile is one end of a longest path, and the tile farthest from that is the
+  // other end
+  static int diameter(int tiles, int[] from, int[] to) {
+    int edges = tiles - 1;
+    // the neighbors of tile t are adjacent[start[t]] up to adjacent[start[t + 1]]
+    int[] start = new int[tiles + 1];
+    for (int e = 0; e < edges; e++) {
+      start[from[e] + 1] += 1;
+      start[to[e] + 1] += 1;
+    }
+    for (int t = 0; t < tiles; t++) {
+      start[t + 1] += start[t];
+    }
+    int[] adjacent = new int[2 * edges];
+    int[] fill = java.util.Arrays.copyOf(start, tiles);
+    for (int e = 0; e < edges; e++) {
+      adjacent[fill[from[e]]++] = to[e];
+      adjacent[fill[to[e]]++] = from[e];
+    }
+    int[] dist = new int[tiles];
+    int[] queue = new int[tiles];
+    int end = farthest(0, start, adjacent, dist, queue);
+    return dist[farthest(end, start, adjacent, dist, queue)];
+  }
+
+  // the tile farthest from the given one in the tree with the given
+  // neighbors, leaving the distance of every tile in dist
+  static int farthest(int first, int[] start, int[] adjacent, int[] dist, int[] queue) {
+    java.util.Arrays.fill(dist, -1);
+    dist[first] = 0;
+    queue[0] = first;
+    int tail = 1;
+    for (int head = 0; head < tail; head++) {
+      int tile = queue[head];
+      for (int i = start[tile]; i < start[tile + 1]; i++) {
+        int next = adjacent[i];
+        if (dist[next] < 0) {
+          dist[next] = dist[tile] + 1;
+          queue[tail++] = next;
+        }
+      }
+    }
+    return queue[tail - 1];
+  }
+}
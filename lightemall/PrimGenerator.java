@@ -0,0 +1,79 @@
+import java.util.Random;
+
+// prim's algorithm with random edge weights, growing the tree from one tile
+// through a binary heap of edges packed into longs
+class PrimGenerator implements BoardGenerator {
+  public void spanningTree(int width, int height, Random rand, int[] from, int[] to) {
+    int numTiles = width * height;
+    boolean[] inTree = new boolean[numTiles];
+    // every frontier edge is its weight in the high half and the packed pair
+    // of tile and direction in the low half
+    long[] heap = new long[2 * numTiles + 1];
+    int[] neighbors = new int[4];
+    int size = 0;
+    int count = 0;
+    int start = rand.nextInt(numTiles);
+    inTree[start] = true;
+    size = this.pushEdges(start, width, height, rand, inTree, heap, size, neighbors);
+    while (count < numTiles - 1) {
+      long top = heap[0];
+      heap[0] = heap[--size];
+      siftDown(heap, size);
+      int edge = (int) top;
+      int tile = edge >>> 2;
+      GeneratorUtil.neighbors(tile, width, height, neighbors);
+      int target = neighbors[edge & 3];
+      if (!inTree[target]) {
+        inTree[target] = true;
+        from[count] = tile;
+        to[count] = target;
+        count += 1;
+        size = this.pushEdges(target, width, height, rand, inTree, heap, size, neighbors);
+      }
+    }
+  }
+
+  // pushes the edges from the given tile to its neighbors outside the tree,
+  // returning the new size of the heap
+  int pushEdges(int tile, int width, int height, Random rand, boolean[] inTree, long[] heap,
+      int size, int[] neighbors) {
+    int all = GeneratorUtil.neighbors(tile, width, height, neighbors);
+    for (int i = 0; i < all; i++) {
+      if (!inTree[neighbors[i]]) {
+        long weight = rand.nextInt(Integer.MAX_VALUE);
+        heap[size] = (weight << 32) | ((long) tile << 2) | i;
+        siftUp(heap, size);
+        size += 1;
+      }
+    }
+    return size;
+  }
+
+  // moves the entry at the given position up to where it belongs
+  static void siftUp(long[] heap, int at) {
+    long entry = heap[at];
+    while (at > 0 && heap[(at - 1) / 2] > entry) {
+      heap[at] = heap[(at - 1) / 2];
+      at = (at - 1) / 2;
+    }
+    heap[at] = entry;
+  }
+
+  // moves the entry at the top down to where it belongs
+  static void siftDown(long[] heap, int size) {
+    int at = 0;
+    long entry = heap[0];
+    while (2 * at + 1 < size) {
+      int child = 2 * at + 1;
+      if (child + 1 < size && heap[child + 1] < heap[child]) {
+        child += 1;
+      }
+      if (heap[child] >= entry) {
+        break;
+      }
+      heap[at] = heap[child];
+      at = child;
+    }
+    heap[at] = entry;
+  }
+}
@@ -0,0 +1,116 @@
+import java.nio.file.Paths;
+import java.util.Random;
+import javalib.worldimages.Posn;
+
+// plays a trace back on a new game as fast as it can, without a window,
+// timing every event by its kind, and drawing a frame after every so many
+// events if asked to, so real sessions can be profiled and compared across
+// changes to the engine
+// the same trace always ends on the same board, which fingerprint checks
+// a session is traced by running the game with -Dlightemall.trace=path, or
+// by making it with LightEmAll.traced
+// run with javalib and tester on the class path:
+// java Replay trace.txt [-scene every] [-repeat times]
+// java Replay -random width height events seed [-scene every] [-repeat times]
+class Replay {
+  MoveTrace trace;
+  // draw a frame after this many events, or never if 0
+  int sceneEvery;
+  LightEmAll game;
+  // the time taken by every event, by kind, and by every frame
+  LatencyHistogram clicks;
+  LatencyHistogram keys;
+  LatencyHistogram ticks;
+  LatencyHistogram scenes;
+  // the time taken by the whole replay
+  long nanos;
+
+  Replay(MoveTrace trace, int sceneEvery) {
+    this.trace = trace;
+    this.sceneEvery = sceneEvery;
+    this.clicks = new LatencyHistogram();
+    this.keys = new LatencyHistogram();
+    this.ticks = new LatencyHistogram();
+    this.scenes = new LatencyHistogram();
+  }
+
+  // plays the whole trace on a new game
+  void run() {
+    this.game = this.trace.newGame();
+    this.game.propagateLight();
+    MoveTrace t = this.trace;
+    long start = System.nanoTime();
+    for (int i = 0; i < t.size; i++) {
+      long before = System.nanoTime();
+      if (t.kinds[i] == MoveTrace.CLICK) {
+        this.game.onMouseClicked(new Posn(t.xs[i], t.ys[i]));
+        this.clicks.record(System.nanoTime() - before);
+      }
+      else if (t.kinds[i] == MoveTrace.KEY) {
+        this.game.onKeyEvent(t.keys[i]);
+        this.keys.record(System.nanoTime() - before);
+      }
+      else {
+        this.game.onTick();
+        this.ticks.record(System.nanoTime() - before);
+      }
+      if (this.sceneEvery > 0 && (i + 1) % this.sceneEvery == 0) {
+        before = System.nanoTime();
+        this.game.makeScene();
+        this.scenes.record(System.nanoTime() - before);
+      }
+    }
+    this.nanos = System.nanoTime() - start;
+  }
+
+  // a number that only depends on where the game ended up: its tiles, its
+  // power station, its clicks and its clock
+  long fingerprint() {
+    long hash = this.game.core.station;
+    for (int i = 0; i < this.game.width * this.game.height; i++) {
+      hash = hash * 31 + this.game.mask(i);
+    }
+    return (hash * 31 + this.game.numClicks) * 31 + this.game.counter;
+  }
+
+  // one line per kind of event, and one for the whole replay
+  String report() {
+    return String.format("click  %s%nkey    %s%ntick   %s%nscene  %s%n"
+        + "%d events in %.1fms, fingerprint %016x", this.clicks.summary(),
+        this.keys.summary(), this.ticks.summary(), this.scenes.summary(), this.trace.size,
+        this.nanos / 1e6, this.fingerprint());
+  }
+
+  public static void main(String[] args) {
+    System.setProperty("java.awt.headless", "true");
+    MoveTrace trace;
+    int next;
+    if (args[0].equals("-random")) {
+      long seed = Long.parseLong(args[4]);
+      trace = MoveTrace.random(seed, Integer.parseInt(args[1]), Integer.parseInt(args[2]),
+          Integer.parseInt(args[3]), new Random(seed));
+      next = 5;
+    }
+    else {
+      trace = MoveTrace.read(Paths.get(args[0]));
+      next = 1;
+    }
+    int sceneEvery = 0;
+    int repeat = 1;
+    for (int i = next; i + 1 < args.length; i += 2) {
+      if (args[i].equals("-scene")) {
+        sceneEvery = Integer.parseInt(args[i + 1]);
+      }
+      else if (args[i].equals("-repeat")) {
+        repeat = Integer.parseInt(args[i + 1]);
+      }
+    }
+    // earlier runs warm the JVM up; only the last one is reported
+    Replay replay = null;
+    for (int r = 0; r < repeat; r++) {
+      replay = new Replay(trace, sceneEvery);
+      replay.run();
+    }
+    System.out.println(replay.report());
+  }
+}
@@ -0,0 +1,7 @@
+
+// receives a board one row at a time, from the top, as the connector bits of
+// every tile in the row (see TileGrid)
+// the given array is reused for the next row, so it has to be copied if kept
+interface RowSink {
+  void row(int row, byte[] masks);
+}
@@ -0,0 +1,22 @@
+import java.util.Random;
+
+// rotates every tile of a streamed row a random number of times, the way
+// randomize does, before passing the row on
+class ScramblingSink implements RowSink {
+  RowSink next;
+  Random rand;
+
+  ScramblingSink(RowSink next, Random rand) {
+    this.next = next;
+    this.rand = rand;
+  }
+
+  public void row(int row, byte[] masks) {
+    for (int c = 0; c < masks.length; c++) {
+      for (int r = this.rand.nextInt(4); r > 0; r--) {
+        masks[c] = (byte) PackedBoard.rotateMask(masks[c]);
+      }
+    }
+    this.next.row(row, masks);
+  }
+}
@@ -0,0 +1,521 @@
+import java.util.Arrays;
+
+// works out how many times to rotate every tile of a scrambled board so its
+// wires form one tree over the whole board, which lights every tile wherever
+// the power station is
+// the rotations every tile may still take are kept as a 4 bit set; whatever
+// a tile's remaining rotations agree on is pushed onto its neighbors through
+// a queue, and when that is not enough a rotation is guessed, with every
+// change that follows written to a trail so a bad guess can be taken back
+class Solver {
+  int width;
+  int height;
+  int size;
+  // the connectors of every tile as it was given
+  byte[] masks;
+  // per tile, bit r is set if r clockwise turns are still possible
+  byte[] domain;
+  // per tile, the directions it is known to be wired to
+  byte[] joined;
+  // the groups of tiles known to be wired together, used to rule out loops
+  UndoableDisjointSet sets;
+  // the wire behind every union in sets, as tile << 2 | direction number
+  int[] joins;
+  // per group, the connectors of its tiles that are not known to be wired yet;
+  // a group with none left can never reach the rest of the board
+  int[] loose;
+  // every change to a domain, as tile << 4 | the domain before it
+  int[] trail;
+  int trailSize;
+  // the tiles whose domain changed and whose neighbors have to hear about it
+  int[] queue;
+  boolean[] queued;
+  int head;
+  int queueSize;
+  // per guess, the tile, the rotation guessed and how long the trail and
+  // the list of unions were before it
+  int[] guessTile;
+  int[] guessTurns;
+  int[] guessTrail;
+  int[] guessUnions;
+  int depth;
+  // every tile before this one has one rotation left
+  int cursor;
+  // how often every tile was part of a contradiction, and the tiles that
+  // ever were, which are guessed first after a restart
+  int[] weight;
+  int[] hot;
+  int hotSize;
+  // the tile the last contradiction was found at
+  int conflict;
+  // how many guesses may be taken back before starting over
+  long restartAfter;
+  // how many guesses were made and taken back
+  long guesses;
+  long backtracks;
+  // how many turns were ruled out by trying them
+  long probes;
+  long restarts;
+  // the number of clockwise turns every tile needs, once solved, which is
+  // the fewest that give the tile the look the solution needs
+  int[] rotations;
+  // the total number of clicks that takes
+  int clicks;
+
+  // per mask and direction number, the set of turns after which the mask has
+  // a connector in that direction
+  static final int[][] TURNS_WITH = turnsWith();
+  // per mask, the turns that each give it a different look
+  static final int[] DISTINCT_TURNS = distinctTurns();
+  // per mask and set of turns, the connectors it has after every one of them
+  // and after any of them (see common and possible)
+  static final byte[] COMMON = connectorTable(true);
+  static final byte[] POSSIBLE = connectorTable(false);
+  // how far back the trail is searched for the next tile to guess
+  static final int SCAN = 64;
+  // how many guesses are taken back before the first restart; every restart
+  // doubles it, so the search always ends
+  static final int FIRST_RESTART = 64;
+
+  Solver(TileGrid grid) {
+    this(grid, true);
+  }
+
+  // a solver for the given board whose tiles start out with every turn that
+  // fits the board, queued if asked to; ParallelSolver narrows them down
+  // before anything is queued
+  Solver(TileGrid grid, boolean queueAll) {
+    this.width = grid.width();
+    this.height = grid.height();
+    this.size = this.width * this.height;
+    this.masks = new byte[this.size];
+    this.domain = new byte[this.size];
+    this.joined = new byte[this.size];
+    this.sets = new UndoableDisjointSet(this.size);
+    this.joins = new int[Math.max(0, this.size - 1)];
+    this.loose = new int[this.size];
+    this.trail = new int[this.size];
+    this.queue = new int[this.size];
+    this.queued = new boolean[this.size];
+    this.guessTile = new int[this.size];
+    this.guessTurns = new int[this.size];
+    this.guessTrail = new int[this.size];
+    this.guessUnions = new int[this.size];
+    this.weight = new int[this.size];
+    this.hot = new int[this.size];
+    this.restartAfter = FIRST_RESTART;
+    for (int i = 0; i < this.size; i++) {
+      this.masks[i] = (byte) grid.mask(i);
+      this.loose[i] = Integer.bitCount(this.masks[i]);
+    }
+    for (int i = 0; i < this.size; i++) {
+      this.domain[i] = (byte) this.startingTurns(i);
+      if (queueAll) {
+        this.enqueue(i);
+      }
+    }
+  }
+
+  // takes the turns every tile has left as they are, once they have been
+  // narrowed down until every tile agrees with its neighbors: the wires they
+  // already fix are joined in one pass, and only the tiles with a choice left
+  // are queued, since nothing else can be ruled out; returns false if the
+  // fixed wires close a loop or cut a group of tiles off
+  boolean adoptNarrowed() {
+    for (int tile = 0; tile < this.size; tile++) {
+      int all = common(this.masks[tile], this.domain[tile]);
+      // every wire is joined from its tile on the left or at the top
+      for (int k = 1; k <= 2; k++) {
+        if ((all & 1 << k) != 0 && !this.join(tile, this.neighbor(tile, 1 << k), k)) {
+          return false;
+        }
+      }
+      if (Integer.bitCount(this.domain[tile]) > 1) {
+        this.enqueue(tile);
+      }
+    }
+    return true;
+  }
+
+  // the turns the tile at the given index may take before anything is known
+  // about its neighbors: one turn for every different look, none that point
+  // off the board, and, unless the board only has two tiles, none that join
+  // two dead ends, since those could never reach a third tile
+  int startingTurns(int index) {
+    int mask = this.masks[index];
+    int turns = DISTINCT_TURNS[mask];
+    boolean deadEnd = this.size > 2 && Integer.bitCount(mask) == 1;
+    for (int k = 0; k < 4; k++) {
+      int next = this.neighbor(index, 1 << k);
+      if (next < 0 || deadEnd && Integer.bitCount(this.masks[next]) == 1) {
+        turns &= ~TURNS_WITH[mask][k];
+      }
+    }
+    return turns;
+  }
+
+  // searches for a rotation of every tile that makes the board one tree,
+  // returning whether there is one
+  // a wrong guess may only show up as a contradiction many guesses later,
+  // somewhere else on the board; rather than trying every combination of
+  // the guesses in between, the tiles where contradictions keep showing up
+  // are weighed, and every so often the search starts over guessing the
+  // heaviest tiles first
+  boolean solve() {
+    long restartAt = this.backtracks + this.restartAfter;
+    while (true) {
+      if (this.backtracks >= restartAt && this.depth > 0) {
+        this.undo(this.guessTrail[0], this.guessUnions[0]);
+        this.depth = 0;
+        this.cursor = 0;
+        this.restarts += 1;
+        this.restartAfter *= 2;
+        restartAt = this.backtracks + this.restartAfter;
+      }
+      boolean consistent = this.propagate();
+      int open = consistent ? this.nextGuess() : -1;
+      if (consistent && open < 0) {
+        if (this.sets.count() == 1) {
+          this.finish();
+          return true;
+        }
+        consistent = false;
+      }
+      int probed = consistent ? this.probe(open) : -1;
+      if (probed == 0) {
+        continue;
+      }
+      if (probed > 0) {
+        int turns = Integer.numberOfTrailingZeros(this.domain[open]);
+        this.guessTile[this.depth] = open;
+        this.guessTurns[this.depth] = turns;
+        this.guessTrail[this.depth] = this.trailSize;
+        this.guessUnions[this.depth] = this.sets.unions;
+        this.depth += 1;
+        this.guesses += 1;
+        this.restrict(open, 1 << turns);
+        continue;
+      }
+      // take back guesses until one can be ruled out without a contradiction
+      this.weigh(this.conflict);
+      int tile;
+      do {
+        if (this.depth == 0) {
+          return false;
+        }
+        this.depth -= 1;
+        this.backtracks += 1;
+        this.undo(this.guessTrail[this.depth], this.guessUnions[this.depth]);
+        tile = this.guessTile[this.depth];
+        this.cursor = tile;
+      } while (!this.restrict(tile, this.domain[tile] & ~(1 << this.guessTurns[this.depth])));
+    }
+  }
+
+  // tries every turn the given tile has left, ruling out the ones that lead
+  // straight to a contradiction; returns -1 if all of them do, 0 if any turn
+  // was ruled out, and 1 if a guess is needed
+  int probe(int tile) {
+    int turns = this.domain[tile];
+    int result = 1;
+    for (int r = 0; r < 4; r++) {
+      if ((turns & this.domain[tile] & 1 << r) == 0) {
+        continue;
+      }
+      int trailSize = this.trailSize;
+      int unions = this.sets.unions;
+      this.restrict(tile, 1 << r);
+      boolean consistent = this.propagate();
+      this.undo(trailSize, unions);
+      if (!consistent) {
+        this.probes += 1;
+        if (!this.restrict(tile, this.domain[tile] & ~(1 << r)) || !this.propagate()) {
+          return -1;
+        }
+        result = 0;
+      }
+    }
+    return result;
+  }
+
+  // pushes what every queued tile's remaining turns agree on onto its
+  // neighbors until nothing changes, returning false on a contradiction
+  boolean propagate() {
+    while (this.queueSize > 0) {
+      int tile = this.queue[this.head];
+      this.head = (this.head + 1) % this.size;
+      this.queueSize -= 1;
+      this.queued[tile] = false;
+      int turns = this.domain[tile];
+      if (turns == 0) {
+        return false;
+      }
+      int all = common(this.masks[tile], turns);
+      int any = possible(this.masks[tile], turns);
+      for (int k = 0; k < 4; k++) {
+        int dir = 1 << k;
+        int next = this.neighbor(tile, dir);
+        if (next < 0) {
+          continue;
+        }
+        int backNumber = (k + 2) % 4;
+        if ((all & dir) != 0) {
+          if ((this.joined[tile] & dir) == 0 && !this.join(tile, next, k)) {
+            this.conflict = tile;
+            return false;
+          }
+          if (!this.restrict(next,
+              this.domain[next] & TURNS_WITH[this.masks[next]][backNumber])) {
+            return false;
+          }
+        }
+        else if ((any & dir) == 0) {
+          if (!this.restrict(next,
+              this.domain[next] & ~TURNS_WITH[this.masks[next]][backNumber])) {
+            return false;
+          }
+        }
+        else if (this.wouldClose(tile, next)) {
+          if (!this.restrict(tile, this.domain[tile] & ~TURNS_WITH[this.masks[tile]][k])) {
+            return false;
+          }
+        }
+      }
+    }
+    return true;
+  }
+
+  // records that the given tile is wired to its neighbor in the direction
+  // with the given number, returning false if that closes a loop or leaves a
+  // group of tiles that can never reach the rest of the board
+  boolean join(int tile, int next, int number) {
+    int rootTile = this.sets.find(tile);
+    int rootNext = this.sets.find(next);
+    if (rootTile == rootNext) {
+      return false;
+    }
+    int looseEnds = this.loose[rootTile] + this.loose[rootNext] - 2;
+    this.sets.union(rootTile, rootNext);
+    int root = this.sets.find(rootTile);
+    this.loose[root] = looseEnds;
+    this.joins[this.sets.unions - 1] = tile << 2 | number;
+    this.joined[tile] |= 1 << number;
+    this.joined[next] |= 1 << (number + 2) % 4;
+    return looseEnds > 0 || this.sets.size[root] == this.size;
+  }
+
+  // would wiring the two given neighbors together close a loop, or leave a
+  // group of tiles without any loose connectors short of the whole board?
+  boolean wouldClose(int tile, int next) {
+    int rootTile = this.sets.find(tile);
+    int rootNext = this.sets.find(next);
+    return rootTile == rootNext || this.loose[rootTile] + this.loose[rootNext] == 2
+        && this.sets.size[rootTile] + this.sets.size[rootNext] < this.size;
+  }
+
+  // notes that the given tile and its neighbors were part of a contradiction
+  void weigh(int tile) {
+    for (int k = -1; k < 4; k++) {
+      int next = k < 0 ? tile : this.neighbor(tile, 1 << k);
+      if (next >= 0) {
+        if (this.weight[next] == 0) {
+          this.hot[this.hotSize++] = next;
+        }
+        this.weight[next] += 1;
+      }
+    }
+  }
+
+  // narrows the turns of the given tile down to the given ones, writing the
+  // change to the trail, and returns false if none are left
+  boolean restrict(int tile, int turns) {
+    if (turns != this.domain[tile]) {
+      if (this.trailSize == this.trail.length) {
+        this.trail = Arrays.copyOf(this.trail, this.trail.length * 2);
+      }
+      this.trail[this.trailSize++] = tile << 4 | this.domain[tile];
+      this.domain[tile] = (byte) turns;
+      this.enqueue(tile);
+    }
+    if (turns == 0) {
+      this.conflict = tile;
+    }
+    return turns != 0;
+  }
+
+  // queues the given tile, unless it already is
+  void enqueue(int tile) {
+    if (!this.queued[tile]) {
+      this.queued[tile] = true;
+      this.queue[(this.head + this.queueSize) % this.size] = tile;
+      this.queueSize += 1;
+    }
+  }
+
+  // takes back every change made since the trail and the list of unions had
+  // the given lengths, and empties the queue
+  void undo(int trailSize, int unions) {
+    while (this.trailSize > trailSize) {
+      int entry = this.trail[--this.trailSize];
+      this.domain[entry >> 4] = (byte) (entry & 15);
+    }
+    while (this.sets.unions > unions) {
+      int join = this.joins[this.sets.unions - 1];
+      int tile = join >> 2;
+      int dir = 1 << (join & 3);
+      this.joined[tile] &= ~dir;
+      this.joined[this.neighbor(tile, dir)] &= ~PowerGrid.opposite(dir);
+      int hung = this.sets.history[this.sets.unions - 1];
+      int root = this.sets.parent[hung];
+      this.loose[root] = this.loose[root] - this.loose[hung] + 2;
+      this.sets.undo(this.sets.unions - 1);
+    }
+    while (this.queueSize > 0) {
+      this.queued[this.queue[this.head]] = false;
+      this.head = (this.head + 1) % this.size;
+      this.queueSize -= 1;
+    }
+  }
+
+  // the tile to guess next: the open tile that was part of the most
+  // contradictions, else an open tile next to the latest changes, so every
+  // part of the board is settled before moving on to the next, else the
+  // first open tile
+  int nextGuess() {
+    int heaviest = -1;
+    for (int i = 0; i < this.hotSize; i++) {
+      int tile = this.hot[i];
+      if (Integer.bitCount(this.domain[tile]) > 1
+          && (heaviest < 0 || this.weight[tile] > this.weight[heaviest])) {
+        heaviest = tile;
+      }
+    }
+    if (heaviest >= 0) {
+      return heaviest;
+    }
+    int oldest = Math.max(this.depth == 0 ? this.trailSize : this.guessTrail[0],
+        this.trailSize - SCAN);
+    for (int i = this.trailSize - 1; i >= oldest; i--) {
+      int tile = this.trail[i] >> 4;
+      for (int k = -1; k < 4; k++) {
+        int next = k < 0 ? tile : this.neighbor(tile, 1 << k);
+        if (next >= 0 && Integer.bitCount(this.domain[next]) > 1) {
+          return next;
+        }
+      }
+    }
+    return this.nextOpen();
+  }
+
+  // the first tile with more than one turn left, or -1 if there is none
+  int nextOpen() {
+    while (this.cursor < this.size && Integer.bitCount(this.domain[this.cursor]) == 1) {
+      this.cursor += 1;
+    }
+    return this.cursor < this.size ? this.cursor : -1;
+  }
+
+  // reads the solution off of the domains
+  void finish() {
+    this.rotations = new int[this.size];
+    this.clicks = 0;
+    for (int i = 0; i < this.size; i++) {
+      this.rotations[i] = Integer.numberOfTrailingZeros(this.domain[i]);
+      this.clicks += this.rotations[i];
+    }
+  }
+
+  // clicks every tile of the given game as many times as the solution says
+  void apply(GameCore core) {
+    for (int i = 0; i < this.size; i++) {
+      for (int r = 0; r < this.rotations[i]; r++) {
+        core.rotate(i);
+      }
+    }
+  }
+
+  // the index of the neighbor of the given tile in the given direction, or -1
+  // if that would be off the board
+  int neighbor(int index, int dir) {
+    return TileGrid.neighbor(index, dir, this.width, this.height);
+  }
+
+  // the given connectors after the given number of clockwise turns
+  static int turn(int mask, int turns) {
+    return ((mask << turns) | (mask >> (4 - turns))) & 15;
+  }
+
+  // the connectors the given mask has after every one of the given turns
+  static int common(int mask, int turns) {
+    return COMMON[mask << 4 | turns];
+  }
+
+  // the connectors the given mask has after any of the given turns
+  static int possible(int mask, int turns) {
+    return POSSIBLE[mask << 4 | turns];
+  }
+
+  static int commonOf(int mask, int turns) {
+    int all = 15;
+    for (int r = 0; r < 4; r++) {
+      if ((turns & 1 << r) != 0) {
+        all &= turn(mask, r);
+      }
+    }
+    return all;
+  }
+
+  static int possibleOf(int mask, int turns) {
+    int any = 0;
+    for (int r = 0; r < 4; r++) {
+      if ((turns & 1 << r) != 0) {
+        any |= turn(mask, r);
+      }
+    }
+    return any;
+  }
+
+  // per mask and set of turns, at mask << 4 | turns, what common and
+  // possible return, worked out once since the solvers ask for them for
+  // every neighbor of every tile they look at
+  static byte[] connectorTable(boolean every) {
+    byte[] table = new byte[256];
+    for (int mask = 0; mask < 16; mask++) {
+      for (int turns = 0; turns < 16; turns++) {
+        table[mask << 4 | turns] = (byte) (every ? commonOf(mask, turns)
+            : possibleOf(mask, turns));
+      }
+    }
+    return table;
+  }
+
+  static int[] distinctTurns() {
+    int[] table = new int[16];
+    for (int mask = 0; mask < 16; mask++) {
+      for (int r = 0; r < 4; r++) {
+        boolean repeat = false;
+        for (int s = 0; s < r; s++) {
+          repeat = repeat || turn(mask, s) == turn(mask, r);
+        }
+        if (!repeat) {
+          table[mask] |= 1 << r;
+        }
+      }
+    }
+    return table;
+  }
+
+  static int[][] turnsWith() {
+    int[][] table = new int[16][4];
+    for (int mask = 0; mask < 16; mask++) {
+      for (int k = 0; k < 4; k++) {
+        for (int r = 0; r < 4; r++) {
+          if ((turn(mask, r) & 1 << k) != 0) {
+            table[mask][k] |= 1 << r;
+          }
+        }
+      }
+    }
+    return table;
+  }
+}
@@ -0,0 +1,54 @@
+// a board of tiles as seen by the power propagation engine, where every tile
+// is addressed by its index (col * height + row)
+interface TileGrid {
+  // the connector bits of a tile's mask
+  int TOP = 1;
+  int RIGHT = 2;
+  int BOTTOM = 4;
+  int LEFT = 8;
+
+  // the number of columns on the board
+  int width();
+
+  // the number of rows on the board
+  int height();
+
+  // the connector bits of the tile at the given index
+  int mask(int index);
+
+  // records whether the tile at the given index is connected to the power
+  // station
+  void setPowered(int index, boolean powered);
+
+  // is the tile at the given index powered?
+  boolean isPowered(int index);
+
+  // does the tile at the given index hold the power station?
+  boolean isStation(int index);
+
+  // rotates the tile at the given index in a clockwise direction
+  void rotate(int index);
+
+  // moves the power station from one tile to another
+  void moveStation(int from, int to);
+
+  // the index of the neighbor of the tile at the given index in the given
+  // direction, on a board of the given size, or -1 if that would be off the
+  // board; the power engine, the solvers and the generators all find
+  // neighbors through this
+  static int neighbor(int index, int dir, int width, int height) {
+    int row = index % height;
+    if (dir == TOP) {
+      return row > 0 ? index - 1 : -1;
+    }
+    else if (dir == BOTTOM) {
+      return row < height - 1 ? index + 1 : -1;
+    }
+    else if (dir == LEFT) {
+      return index >= height ? index - height : -1;
+    }
+    else {
+      return index < (width - 1) * height ? index + height : -1;
+    }
+  }
+}
@@ -0,0 +1,96 @@
+import java.awt.Color;
+import java.util.HashMap;
+import javalib.worldimages.*;
+
+// pre-built tile images for one tile size and wire width, shared by every
+// board: one image for every combination of connectors, power station and
+// wire color, so drawing a tile is a lookup rather than a new image tree
+class TileImageCache {
+  // every cache made so far, by tile size and wire width
+  static HashMap<Integer, TileImageCache> caches = new HashMap<Integer, TileImageCache>();
+
+  int size;
+  int wireWidth;
+  // per wire color, the image of every mask, with the power station drawn on
+  // the images at mask + 16
+  HashMap<Color, WorldImage[]> images;
+  // the wire colors of tiles in reach of the power station in radius mode,
+  // from next to it out to the radius (see PowerRadius)
+  static final Color[] REACH_SHADES = new Color[] { Color.YELLOW, new Color(255, 200, 0),
+      new Color(255, 145, 0) };
+
+  TileImageCache(int size, int wireWidth) {
+    this.size = size;
+    this.wireWidth = wireWidth;
+    this.images = new HashMap<Color, WorldImage[]>();
+    // the colors every board uses are built up front
+    this.images(Color.YELLOW);
+    this.images(Color.LIGHT_GRAY);
+  }
+
+  // the shared cache for the given tile size and wire width
+  static synchronized TileImageCache of(int size, int wireWidth) {
+    Integer key = size << 16 | wireWidth;
+    TileImageCache cache = caches.get(key);
+    if (cache == null) {
+      cache = new TileImageCache(size, wireWidth);
+      caches.put(key, cache);
+    }
+    return cache;
+  }
+
+  // the image of a tile with the given connectors, wire color and power station
+  WorldImage image(int mask, Color wireColor, boolean hasPowerStation) {
+    return this.images(wireColor)[hasPowerStation ? mask + 16 : mask];
+  }
+
+  // all 32 tile images for the given wire color, indexed by mask, plus 16 for
+  // the ones with the power station
+  WorldImage[] images(Color wireColor) {
+    WorldImage[] forColor = this.images.get(wireColor);
+    if (forColor == null) {
+      forColor = new WorldImage[32];
+      for (int mask = 0; mask < 16; mask++) {
+        forColor[mask] = draw(mask, this.size, this.wireWidth, wireColor, false);
+        forColor[mask + 16] = draw(mask, this.size, this.wireWidth, wireColor, true);
+      }
+      this.images.put(wireColor, forColor);
+      Metrics.madeImages(32);
+    }
+    return forColor;
+  }
+
+  // Generate an image of a tile with the given connectors.
+  // - size: the size of the tile, in pixels
+  // - wireWidth: the width of wires, in pixels
+  // - wireColor: the Color to use for rendering wires on this
+  // - hasPowerStation: if true, draws a fancy star on this tile to represent the
+  // power station
+  //
+  static WorldImage draw(int mask, int size, int wireWidth, Color wireColor,
+      boolean hasPowerStation) {
+    // Start tile image off as a blue square with a wire-width square in the middle,
+    // to make image "cleaner" (will look strange if tile has no wire, but that
+    // can't be)
+    WorldImage image = new OverlayImage(
+        new RectangleImage(wireWidth, wireWidth, OutlineMode.SOLID, wireColor),
+        new RectangleImage(size, size, OutlineMode.SOLID, Color.DARK_GRAY));
+    WorldImage vWire = new RectangleImage(wireWidth, (size + 1) / 2, OutlineMode.SOLID, wireColor);
+    WorldImage hWire = new RectangleImage((size + 1) / 2, wireWidth, OutlineMode.SOLID, wireColor);
+    if ((mask & TileGrid.TOP) != 0)
+      image = new OverlayOffsetAlign(AlignModeX.CENTER, AlignModeY.TOP, vWire, 0, 0, image);
+    if ((mask & TileGrid.RIGHT) != 0)
+      image = new OverlayOffsetAlign(AlignModeX.RIGHT, AlignModeY.MIDDLE, hWire, 0, 0, image);
+    if ((mask & TileGrid.BOTTOM) != 0)
+      image = new OverlayOffsetAlign(AlignModeX.CENTER, AlignModeY.BOTTOM, vWire, 0, 0, image);
+    if ((mask & TileGrid.LEFT) != 0)
+      image = new OverlayOffsetAlign(AlignModeX.LEFT, AlignModeY.MIDDLE, hWire, 0, 0, image);
+    if (hasPowerStation) {
+      image = new OverlayImage(
+          new OverlayImage(new StarImage(size / 3, 7, OutlineMode.OUTLINE, new Color(255, 128, 0)),
+              new StarImage(size / 3, 7, OutlineMode.SOLID, new Color(0, 255, 255))),
+          image);
+    }
+    return image;
+  }
+}
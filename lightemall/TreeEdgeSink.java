@@ -0,0 +1,32 @@
+// turns streamed rows back into the edges of the spanning tree they were
+// wired from, as adjacent tile indices (col * height + row)
+class TreeEdgeSink implements RowSink {
+  int height;
+  int[] from;
+  int[] to;
+  int count;
+
+  TreeEdgeSink(int height, int[] from, int[] to) {
+    this.height = height;
+    this.from = from;
+    this.to = to;
+    this.count = 0;
+  }
+
+  public void row(int row, byte[] masks) {
+    for (int c = 0; c < masks.length; c++) {
+      if ((masks[c] & TileGrid.RIGHT) != 0) {
+        this.from[this.count] = c * this.height + row;
+        this.to[this.count] = (c + 1) * this.height + row;
+        this.count += 1;
+      }
+    }
+    for (int c = 0; c < masks.length; c++) {
+      if ((masks[c] & TileGrid.BOTTOM) != 0) {
+        this.from[this.count] = c * this.height + row;
+        this.to[this.count] = c * this.height + row + 1;
+        this.count += 1;
+      }
+    }
+  }
+}
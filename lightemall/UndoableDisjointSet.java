@@ -0,0 +1,63 @@
+// disjoint sets whose unions can be taken back, most recent first, for
+// searches that backtrack
+// finds do not compress paths, so undoing a union only has to unhang one
+// root; union by size keeps every find logarithmic instead
+class UndoableDisjointSet {
+  int[] parent;
+  int[] size;
+  // the roots hung under another root, in the order they were hung
+  int[] history;
+  int unions;
+
+  UndoableDisjointSet(int n) {
+    this.parent = new int[n];
+    this.size = new int[n];
+    this.history = new int[Math.max(0, n - 1)];
+    for (int i = 0; i < n; i++) {
+      this.parent[i] = i;
+      this.size[i] = 1;
+    }
+    this.unions = 0;
+  }
+
+  // the representative of the set containing the given element
+  int find(int x) {
+    while (this.parent[x] != x) {
+      x = this.parent[x];
+    }
+    return x;
+  }
+
+  // combines the sets containing the two given elements, returning false if
+  // they were already the same set
+  boolean union(int a, int b) {
+    int ra = this.find(a);
+    int rb = this.find(b);
+    if (ra == rb) {
+      return false;
+    }
+    if (this.size[ra] < this.size[rb]) {
+      int swap = ra;
+      ra = rb;
+      rb = swap;
+    }
+    this.parent[rb] = ra;
+    this.size[ra] += this.size[rb];
+    this.history[this.unions++] = rb;
+    return true;
+  }
+
+  // takes back the most recent unions until only the given number are left
+  void undo(int unions) {
+    while (this.unions > unions) {
+      int rb = this.history[--this.unions];
+      this.size[this.parent[rb]] -= this.size[rb];
+      this.parent[rb] = rb;
+    }
+  }
+
+  // the number of disjoint sets
+  int count() {
+    return this.parent.length - this.unions;
+  }
+}
@@ -0,0 +1,33 @@
+import java.util.Random;
+
+// wilson's algorithm: loop-erased random walks from every tile until they hit
+// the tree, which picks uniformly among all spanning trees
+class WilsonGenerator implements BoardGenerator {
+  public void spanningTree(int width, int height, Random rand, int[] from, int[] to) {
+    int numTiles = width * height;
+    boolean[] inTree = new boolean[numTiles];
+    // the tile the walk last left each tile towards
+    int[] next = new int[numTiles];
+    int[] neighbors = new int[4];
+    int count = 0;
+    inTree[rand.nextInt(numTiles)] = true;
+    for (int start = 0; start < numTiles; start++) {
+      // walk until the tree is hit, overwriting exits to erase loops
+      int tile = start;
+      while (!inTree[tile]) {
+        int options = GeneratorUtil.neighbors(tile, width, height, neighbors);
+        next[tile] = neighbors[rand.nextInt(options)];
+        tile = next[tile];
+      }
+      // add the loop-erased path to the tree
+      tile = start;
+      while (!inTree[tile]) {
+        inTree[tile] = true;
+        from[count] = tile;
+        to[count] = next[tile];
+        count += 1;
+        tile = next[tile];
+      }
+    }
+  }
+}
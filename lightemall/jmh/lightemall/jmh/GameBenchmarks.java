@@ -0,0 +1,78 @@
+package lightemall.jmh;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// every operation of the Benchmarks harness, measured by JMH in forked JVMs
+// on boards from 8x8 to 2000x2000, as throughput and as sampled latencies
+// with their percentiles, where the gc profiler counts the bytes allocated by
+// every thread, pool threads included
+// JMH will not generate benchmarks in the default package, and no other
+// package can name the game's classes, so the operations are looked up by
+// reflection once per trial and run through a method handle
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(2)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class GameBenchmarks {
+  @Param({ "construct", "makeBoard", "generateEdge", "kruskal", "boardK", "randomize", "batch",
+      "propagateLight", "onMouseClicked", "coreRotate", "solve", "parallelSolve1",
+      "parallelSolve2", "parallelSolve4", "parallelSolve8", "makeScene" })
+  public String name;
+
+  @Param({ "8", "32", "128", "500", "2000" })
+  public int size;
+
+  // the operation, as made by Benchmarks.all, and its run method bound to it
+  Object operation;
+  MethodHandle run;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Throwable {
+    Method all = Class.forName("Benchmarks").getDeclaredMethod("all");
+    all.setAccessible(true);
+    Class<?> benchmark = Class.forName("Benchmark");
+    Method nameOf = benchmark.getDeclaredMethod("name");
+    nameOf.setAccessible(true);
+    for (Object each : (List<?>) all.invoke(null)) {
+      if (nameOf.invoke(each).equals(this.name)) {
+        this.operation = each;
+      }
+    }
+    if (this.operation == null) {
+      throw new IllegalArgumentException("no benchmark named " + this.name);
+    }
+    Method setUp = benchmark.getDeclaredMethod("setUp", int.class, int.class, Random.class);
+    setUp.setAccessible(true);
+    setUp.invoke(this.operation, this.size, this.size, new Random(42));
+    Method run = benchmark.getDeclaredMethod("run");
+    run.setAccessible(true);
+    this.run = MethodHandles.lookup().unreflect(run).bindTo(this.operation);
+  }
+
+  // whatever the operation returns goes to the blackhole, so its work is
+  // never thrown away as unused
+  @Benchmark
+  public void run(Blackhole hole) throws Throwable {
+    hole.consume((Object) this.run.invokeExact());
+  }
+}
@@ -1,8 +1,17 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 import tester.*;
 import javalib.impworld.*;
 import java.awt.Color;
@@ -16,7 +25,7 @@ class CompareEdge implements Comparator<Edge> {
   }
 }
 
-class LightEmAll extends World {
+class LightEmAll extends World implements TileGrid {
   // a list of columns of GamePieces,
   // i.e. represents board in column-major order
   ArrayList<ArrayList<GamePiece>> board;
@@ -24,6 +33,12 @@ class LightEmAll extends World {
   ArrayList<GamePiece> nodes;
   // a list of edges of the minimum spanning tree
   ArrayList<Edge> mst;
+  // every edge between adjacent tiles, as a pair of tile indices
+  // (col * height + row), sorted by their random weights
+  int[] edgeFrom;
+  int[] edgeTo;
+  int[] edgeWeight;
+  int edgeCount;
   // the width and height of the board
   int width;
   int height;
@@ -31,23 +46,115 @@ class LightEmAll extends World {
   // as well as its effective radius
   int powerRow;
   int powerCol;
+  int radius;
   Random rand;
   boolean win;
   int counter;
   int numClicks;
+  // the rules of the game and which tiles are connected to the power
+  // station; this world only adds the clock, the clicks and the drawing
+  GameCore core;
+  // makes the spanning tree every new board is wired from
+  BoardGenerator generator;
+  // where every move is saved as it is made, if anywhere
+  MoveJournal journal;
+  // every event this world receives, for replaying the session later, if it
+  // is being traced, and the file it is saved to when the game exits
+  MoveTrace trace;
+  Path tracePath;
+  // the seed the game was made from, if it was made from one, which a trace
+  // needs to start from the same board
+  long seed;
+  // the moves that z can undo and y can redo
+  MoveHistory history;
+  static final int HISTORY_MOVES = 1024;
+  // the shared images of every kind of tile
+  TileImageCache tiles;
+  // a retained picture of the board, only used for boards with more than
+  // RETAINED_TILES tiles; smaller boards draw every tile on every frame
+  BoardRaster raster;
+  static final int RETAINED_TILES = 64;
+  // the part of the board that is shown
+  Camera camera;
+  // how many tiles are powered in every block of the board, for drawing it
+  // zoomed out; only kept along with the raster
+  PowerPyramid pyramid;
+  // the tiles of a board with more than RETAINED_TILES tiles, one byte each,
+  // which the rules and the raster run on through this world; no GamePieces
+  // are made for them, so board, nodes and mst are left empty
+  PackedBoard packed;
 
-  // int radius; // optional for extra credit
   LightEmAll(int width, int height, Random rand) {
+    this(width, height, rand, new KruskalGenerator(true));
+  }
+
+  // a game made from the given seed; run with -Dlightemall.trace=path to
+  // save every event of the session to that file when the game exits
+  LightEmAll(int width, int height, long seed) {
+    this(width, height, new Random(seed));
+    this.seed = seed;
+    String path = System.getProperty("lightemall.trace");
+    if (path != null) {
+      this.traceTo(Paths.get(path));
+    }
+  }
+
+  // a new game made from the given seed, tracing every event from its first
+  // one and saving them to the given file when the game exits
+  static LightEmAll traced(int width, int height, long seed, Path path) {
+    LightEmAll game = new LightEmAll(width, height, new Random(seed));
+    game.seed = seed;
+    game.traceTo(path);
+    return game;
+  }
+
+  // the game whose trace is saved when the program exits, and the one
+  // shutdown hook that saves it, registered by the first game traced
+  static volatile LightEmAll tracing;
+  static Thread traceSaver;
+
+  // traces every event from now on, saving them to the given file when the
+  // game exits; only called on a game that has just been made from its seed,
+  // since a replay starts from the board that seed makes
+  // only the game traced last is saved on exit
+  void traceTo(Path path) {
+    this.trace = new MoveTrace(this.seed, this.width, this.height);
+    this.tracePath = path;
+    LightEmAll.tracing = this;
+    synchronized (LightEmAll.class) {
+      if (LightEmAll.traceSaver == null) {
+        LightEmAll.traceSaver = new Thread() {
+          public void run() {
+            LightEmAll game = LightEmAll.tracing;
+            if (game != null) {
+              game.saveTrace();
+            }
+          }
+        };
+        Runtime.getRuntime().addShutdownHook(LightEmAll.traceSaver);
+      }
+    }
+  }
+
+  // saves the trace to its file, if the game is being traced
+  void saveTrace() {
+    if (this.trace != null) {
+      this.trace.write(this.tracePath);
+    }
+  }
+
+  LightEmAll(int width, int height, Random rand, BoardGenerator generator) {
     this.width = width; // cols
     this.height = height; // rows
     this.rand = rand;
+    this.generator = generator;
+    this.core = new GameCore(this, 0);
+    this.history = new MoveHistory(HISTORY_MOVES);
+    this.tiles = TileImageCache.of(60, 5);
     this.nodes = new ArrayList<GamePiece>();
     this.mst = new ArrayList<Edge>();
-    this.board = this.makeBoard();
-    this.generateEdge();
-    this.kruskal();
-    this.boardK();
-    this.randomize();
+    this.makeView();
+    this.newBoard();
     this.counter = 0;
     this.win = false;
   }
@@ -56,32 +163,70 @@ class LightEmAll extends World {
     this.width = width; // cols
     this.height = height; // rows
     this.rand = new Random(20);
+    this.generator = new KruskalGenerator(true);
+    this.core = new GameCore(this, 0);
+    this.history = new MoveHistory(HISTORY_MOVES);
+    this.tiles = TileImageCache.of(60, 5);
     this.nodes = new ArrayList<GamePiece>();
     this.mst = new ArrayList<Edge>();
     this.board = this.makeBoard();
     this.generateEdge();
     this.win = false;
+    this.camera = new Camera(width, height, 500, 500);
+  }
+
+  // a game showing the given saved board, with the power station at the
+  // given index, the clicks and the clock, and the radius of the tree the
+  // board was wired from; no new board is dealt, and the mst is left empty
+  LightEmAll(TileGrid saved, int station, int clicks, int time, int radius) {
+    this.width = saved.width(); // cols
+    this.height = saved.height(); // rows
+    this.rand = new Random();
+    this.generator = new KruskalGenerator(true);
+    this.core = new GameCore(this, 0);
+    this.history = new MoveHistory(HISTORY_MOVES);
+    this.tiles = TileImageCache.of(60, 5);
+    this.mst = new ArrayList<Edge>();
+    this.makeView();
+    if (this.packed == null) {
+      this.board = this.makeBoard();
+    }
+    this.win = false;
+    this.radius = radius;
+    this.restore(saved, station, clicks, time);
+  }
+
+  // sets up the part of the board that is shown, and for a board too large
+  // to draw piece by piece, its packed tiles and the retained picture of them
+  void makeView() {
+    this.camera = new Camera(this.width, this.height, 500, 500);
+    if (this.width * this.height > RETAINED_TILES) {
+      this.packed = new PackedBoard(this.width, this.height);
+      this.board = new ArrayList<ArrayList<GamePiece>>();
+      this.nodes = new ArrayList<GamePiece>();
+      this.pyramid = new PowerPyramid(this.width, this.height);
+      this.raster = new BoardRaster(this.width, this.height, this.camera, this.pyramid);
+    }
   }
 
   // displays the board on the screen
+  // power is only propagated again when the board was changed in bulk;
+  // clicks keep it up to date as they happen, so steady frames cost nothing
   public WorldScene makeScene() {
+    long start = Metrics.now();
+    if (!this.core.lit) {
+      this.propagateLight();
+    }
+    this.refreshReach();
     WorldScene ws = new WorldScene(500, 500);
-    for (int c = 0; c < this.width; c++) {
-      for (int r = 0; r < this.height; r++) {
-        GamePiece tile = this.board.get(c).get(r);
-        if (tile.powerStation) {
-          ws.placeImageXY(tile.tileImage(60, 5, Color.YELLOW, tile.powerStation), c * 60 + 30,
-              r * 60 + 30);
-        }
-        else if (tile.powered) {
-          ws.placeImageXY(tile.tileImage(60, 5, Color.YELLOW, tile.powerStation), c * 60 + 30,
-              r * 60 + 30);
-        }
-        else {
-          ws.placeImageXY(tile.tileImage(60, 5, Color.LIGHT_GRAY, tile.powerStation), c * 60 + 30,
-              r * 60 + 30);
-        }
-      }
+    int drawn = 0;
+    if (this.raster != null) {
+      // only the tiles that changed since the last frame are drawn again
+      drawn = this.raster.flush(this.packed);
+      ws.placeImageXY(this.raster.image, this.camera.viewWidth / 2, this.camera.viewHeight / 2);
+    }
+    else {
+      this.placeTiles(ws);
     }
     if (this.win) {
       ws.placeImageXY(new TextImage("You Win ♡⸜(˶˃ ᵕ ˂˶)⸝♡", 30, Color.white), this.width * 6 + 150,
@@ -96,14 +241,61 @@ class LightEmAll extends World {
         new OverlayImage(new TextImage(this.counter + "", 25, Color.red),
             new RectangleImage(60, 40, OutlineMode.SOLID, Color.BLACK)),
         width * 20 + 230, height * 20 + 310);
-    this.propagateLight();
+    // the images of the tiles are counted by the cache that makes them; these
+    // are the texts above, the clock with its box, and the win message
+    Metrics.madeImages(this.win ? 7 : 5);
+    Metrics.frame(start, drawn);
     return ws;
   }
 
+  // places the image of every tile in view on the given scene
+  void placeTiles(WorldScene ws) {
+    Camera cam = this.camera;
+    TileImageCache images = cam.tileSize == 60 ? this.tiles
+        : TileImageCache.of(cam.tileSize, cam.wireWidth());
+    WorldImage[] litTiles = images.images(Color.YELLOW);
+    WorldImage[] unlitTiles = images.images(Color.LIGHT_GRAY);
+    // in radius mode, tiles in reach are shaded by how far they are from the
+    // power station, and the rest are not lit
+    PowerRadius reach = this.core.reach;
+    int half = cam.tileSize / 2;
+    for (int c = cam.firstCol(); c <= cam.lastCol(); c++) {
+      for (int r = cam.firstRow(); r <= cam.lastRow(); r++) {
+        GamePiece tile = this.board.get(c).get(r);
+        int look = tile.powerStation ? tile.mask() + 16 : tile.mask();
+        if (reach != null) {
+          int index = c * this.height + r;
+          WorldImage[] shaded = !reach.inReach(index) ? unlitTiles
+              : images.images(TileImageCache.REACH_SHADES[reach.shade(index)]);
+          ws.placeImageXY(shaded[look], cam.screenX(c) + half, cam.screenY(r) + half);
+        }
+        else if (tile.powerStation || tile.powered) {
+          ws.placeImageXY(litTiles[look], cam.screenX(c) + half, cam.screenY(r) + half);
+        }
+        else {
+          ws.placeImageXY(unlitTiles[look], cam.screenX(c) + half, cam.screenY(r) + half);
+        }
+      }
+    }
+  }
+
+  // notes that the tile at the given index may look different
+  void changed(int index) {
+    if (this.raster != null) {
+      this.raster.markDirty(index);
+    }
+  }
+
   // on Tick for the clock
   public void onTick() {
+    if (this.trace != null) {
+      this.trace.tick();
+    }
     if (!this.win) {
       this.counter += 1;
+      if (this.journal != null) {
+        this.journal.ticked();
+      }
     }
   }
 
@@ -130,166 +322,360 @@ class LightEmAll extends World {
   // when the user clicks on a tile, the wire rotates in a clockwise direction
   // also, the light propagates through the wires if the connection is valid
   public void onMouseClicked(Posn pos) {
-    int tileDim = 60;
-    int c = Math.floorDiv(pos.x, tileDim);
-    int r = Math.floorDiv(pos.y, tileDim);
+    if (this.trace != null) {
+      this.trace.click(pos.x, pos.y);
+    }
+    int index = this.camera.tileAt(pos.x, pos.y);
     // if the user clicks a location outside the board constraints
-    if (c > this.width - 1 || r > this.height - 1) {
+    if (index < 0) {
       return;
     }
-    GamePiece gcPressed = this.board.get(c).get(r);
-    gcPressed.rotate();
+    // only the tiles whose connection to the power station went through the
+    // rotated tile need to be looked at again
+    long start = Metrics.now();
+    long visited = this.core.power.visited;
+    this.core.rotate(index);
     this.numClicks += 1;
-    for (int i = 0; i < width; i++) {
-      for (int j = 0; j < height; j++) {
-        GamePiece g = this.board.get(i).get(j);
-        if (!g.powerStation) {
-          g.powered = false;
-        }
-      }
+    this.history.push(MoveJournal.ROTATE, index);
+    if (this.journal != null) {
+      this.journal.rotated(index);
+    }
+    if (this.solved()) {
+      this.win = true;
+    }
+    if (Metrics.ENABLED) {
+      Metrics.lap(Metrics.clicks, start);
+      Metrics.visited.record(this.core.power.visited - visited);
     }
-    this.propagateLight();
   }
 
   // when the user presses on the arrow keys, the power station moves in that
   // direction
   // as long as it is valid
   public void onKeyEvent(String key) {
-    GamePiece tile = this.board.get(this.powerCol).get(this.powerRow);
+    if (this.trace != null) {
+      this.trace.key(key);
+    }
+    long start = Metrics.now();
+    this.pressKey(key);
+    Metrics.lap(Metrics.keys, start);
+  }
+
+  // acts on a key pressed by the user
+  void pressKey(String key) {
+    if (this.moveCamera(key)) {
+      return;
+    }
     if (key.equals("a")) {
       this.nodes = new ArrayList<GamePiece>();
       this.mst = new ArrayList<Edge>();
-      this.board = this.makeBoard();
-      this.generateEdge();
-      this.kruskal();
-      this.boardK();
-      this.randomize();
+      this.newBoard();
       this.counter = 0;
       this.numClicks = 0;
       this.win = false;
+      this.powerRow = 0;
+      this.powerCol = 0;
+      // the new tiles are not powered, whatever the old ones were
+      this.core.clear(0);
+      if (this.raster != null) {
+        this.pyramid.clear();
+        this.raster.markAll();
+      }
+      this.history.clear();
+      if (this.journal != null) {
+        this.journal.restarted(this.radius);
+      }
+    }
+    if (key.equals("r")) {
+      this.radiusMode(this.core.reach == null);
+    }
+    else if (key.equals("z")) {
+      this.undo();
+    }
+    else if (key.equals("y")) {
+      this.redo();
+    }
+    else if (key.equals("left")) {
+      this.moveStation(TileGrid.LEFT);
+    }
+    else if (key.equals("right")) {
+      this.moveStation(TileGrid.RIGHT);
     }
-    if (key.equals("left") && this.powerCol > 0) {
-      GamePiece gc = this.board.get(this.powerCol - 1).get(this.powerRow);
-      if (gc.right && tile.left) {
-        tile.powerStation = false;
-        this.powerCol -= 1;
-        gc.powerStation = true;
-        gc.tileImage(60, 5, Color.YELLOW, gc.powerStation);
+    else if (key.equals("up")) {
+      this.moveStation(TileGrid.TOP);
+    }
+    else if (key.equals("down")) {
+      this.moveStation(TileGrid.BOTTOM);
+    }
+  }
+
+  // moves the power station in the given direction (see TileGrid), if it can
+  void moveStation(int dir) {
+    if (this.core.moveStation(dir)) {
+      this.history.push(MoveJournal.STATION, Integer.numberOfTrailingZeros(dir));
+      if (this.journal != null) {
+        this.journal.stationMoved(dir);
+      }
+      if (this.solved()) {
+        this.win = true;
       }
     }
-    else if (key.equals("right") && this.powerCol < this.width - 1) {
-      GamePiece gc = this.board.get(this.powerCol + 1).get(this.powerRow);
-      if (gc.left && tile.right) {
-        tile.powerStation = false;
-        this.powerCol += 1;
-        gc.powerStation = true;
-        gc.tileImage(60, 5, Color.YELLOW, gc.powerStation);
+  }
+
+  // turns radius mode on or off: when on, power only reaches the tiles within
+  // radius hops of the power station, and the game is only won once every
+  // tile is in reach
+  void radiusMode(boolean on) {
+    this.core.limitReach(on ? this.radius : 0);
+    if (this.raster != null) {
+      this.raster.reach = this.core.reach;
+      this.raster.markAll();
+    }
+    this.win = this.solved();
+  }
+
+  // finds how far power reaches again if anything changed, marking the tiles
+  // that were or are now in reach to be drawn again
+  void refreshReach() {
+    PowerRadius reach = this.core.reach;
+    if (reach == null || !reach.stale) {
+      return;
+    }
+    if (this.raster != null) {
+      for (int i = 0; i < reach.count; i++) {
+        this.raster.markDirty(reach.reached[i]);
       }
     }
-    else if (key.equals("up") && this.powerRow > 0) {
-      GamePiece gc = this.board.get(this.powerCol).get(this.powerRow - 1);
-      if (gc.bottom && tile.top) {
-        tile.powerStation = false;
-        this.powerRow -= 1;
-        gc.powerStation = true;
-        gc.tileImage(60, 5, Color.YELLOW, gc.powerStation);
+    reach.compute(this.core.station);
+    if (this.raster != null) {
+      for (int i = 0; i < reach.count; i++) {
+        this.raster.markDirty(reach.reached[i]);
       }
     }
-    else if (key.equals("down") && this.powerRow < this.height - 1) {
-      GamePiece gc = this.board.get(this.powerCol).get(this.powerRow + 1);
-      if (gc.top && tile.bottom) {
-        tile.powerStation = false;
-        this.powerRow += 1;
-        gc.powerStation = true;
-        gc.tileImage(60, 5, Color.YELLOW, gc.powerStation);
+  }
+
+  // is every tile lit, and in radius mode within reach of the power station?
+  boolean solved() {
+    this.refreshReach();
+    return this.core.solved();
+  }
+
+  // takes back the last move, if there is one: a rotation is turned back,
+  // re-lighting only the tiles whose power changes, and a move of the power
+  // station goes back the way it came
+  void undo() {
+    int move = this.history.undo();
+    if (move < 0) {
+      return;
+    }
+    int value = MoveHistory.value(move);
+    if (MoveHistory.kind(move) == MoveJournal.ROTATE) {
+      this.core.rotateBack(value);
+      this.numClicks -= 1;
+      if (this.journal != null) {
+        this.journal.rotatedBack(value);
       }
     }
     else {
+      int dir = PowerGrid.opposite(1 << value);
+      this.core.moveStation(dir);
+      if (this.journal != null) {
+        this.journal.stationMoved(dir);
+      }
+    }
+    this.win = this.solved();
+  }
+
+  // makes the last move undone again, if there is one
+  void redo() {
+    int move = this.history.redo();
+    if (move < 0) {
       return;
     }
+    int value = MoveHistory.value(move);
+    if (MoveHistory.kind(move) == MoveJournal.ROTATE) {
+      this.core.rotate(value);
+      this.numClicks += 1;
+      if (this.journal != null) {
+        this.journal.rotated(value);
+      }
+    }
+    else {
+      this.core.moveStation(1 << value);
+      if (this.journal != null) {
+        this.journal.stationMoved(1 << value);
+      }
+    }
+    this.win = this.solved();
+  }
+
+  // saves every move from now on to a journal at the given path, taking a
+  // snapshot of the whole board every so many moves
+  void record(Path path, int snapshotEvery) {
+    if (this.journal != null) {
+      this.journal.close();
+    }
+    this.journal = MoveJournal.start(path, this.core, this.numClicks, this.counter,
+        this.radius, snapshotEvery);
+  }
+
+  // the game saved in the journal at the given path, as it was after its last
+  // move, recording again from there
+  static LightEmAll resume(Path path, int snapshotEvery) {
+    MoveJournal journal = MoveJournal.resume(path, snapshotEvery);
+    LightEmAll game = new LightEmAll(journal.core.grid, journal.core.station, journal.clicks,
+        journal.time, journal.radius);
+    journal.core = game.core;
+    game.journal = journal;
+    return game;
+  }
+
+  // replaces every tile with the ones of the given board of the same size,
+  // with the power station at the given index, and the clicks and the clock
+  // the tree the saved board was wired from is not known, so the mst is
+  // left empty rather than holding the tree of the board it replaces
+  void restore(TileGrid saved, int station, int clicks, int time) {
+    this.mst = new ArrayList<Edge>();
+    for (int i = 0; i < this.width * this.height; i++) {
+      if (this.packed != null) {
+        this.packed.cells[i] = (byte) (saved.mask(i) | (i == station ? PackedBoard.STATION : 0));
+        continue;
+      }
+      GamePiece gp = this.board.get(i / this.height).get(i % this.height);
+      gp.setMask(saved.mask(i));
+      gp.powerStation = i == station;
+      gp.powered = false;
+    }
+    this.powerCol = station / this.height;
+    this.powerRow = station % this.height;
+    this.numClicks = clicks;
+    this.counter = time;
+    this.core.clear(station);
+    if (this.raster != null) {
+      this.pyramid.clear();
+      this.raster.markAll();
+    }
+    this.propagateLight();
+  }
+
+  // pans the view with i, j, k and l and zooms it with + and -, returning
+  // whether the key was one of those
+  boolean moveCamera(String key) {
+    int step = this.camera.viewWidth / 4;
+    if (key.equals("i")) {
+      this.camera.pan(0, -step);
+    }
+    else if (key.equals("k")) {
+      this.camera.pan(0, step);
+    }
+    else if (key.equals("j")) {
+      this.camera.pan(-step, 0);
+    }
+    else if (key.equals("l")) {
+      this.camera.pan(step, 0);
+    }
+    else if (key.equals("+") || key.equals("=")) {
+      this.camera.zoomIn();
+    }
+    else if (key.equals("-")) {
+      this.camera.zoomOut();
+    }
+    else {
+      return false;
+    }
+    if (this.raster != null) {
+      this.raster.markAll();
+    }
+    return true;
   }
 
   // kruskal algorithm
   public ArrayList<Edge> kruskal() {
-    HashMap<GamePiece, GamePiece> a = new HashMap<GamePiece, GamePiece>();
+    int numTiles = this.width * this.height;
+    int[] tree = new int[numTiles - 1];
+    // edges are already sorted by weight, so the first edge joining two
+    // different trees belongs in the spanning tree
+    int count = KruskalGenerator.kruskal(numTiles, this.edgeFrom, this.edgeTo, this.edgeCount,
+        new DisjointSet(numTiles), tree);
     ArrayList<Edge> edgesInTree = new ArrayList<Edge>();
-    ArrayList<Edge> worklist = new ArrayList<Edge>(); // all edges in graph, sorted by edge weights
-    for (GamePiece gc : this.nodes) {
-      a.put(gc, gc);
-    }
-    worklist.addAll(mst);
-    // find
-    while (worklist.size() > 0) {
-      Edge cur = worklist.remove(0);
-      GamePiece g1 = find(a, cur.fromNode);
-      GamePiece g2 = find(a, cur.toNode);
-      if (g1.checkEquality(g2)) {
-      }
-      // union
-      else {
-        edgesInTree.add(cur);
-        union(a, find(a, cur.fromNode), find(a, cur.toNode));
-      }
+    for (int i = 0; i < count; i++) {
+      edgesInTree.add(new Edge(this.nodes.get(this.edgeFrom[tree[i]]),
+          this.nodes.get(this.edgeTo[tree[i]]), this.edgeWeight[tree[i]]));
     }
     this.mst = edgesInTree;
     return mst;
   }
 
-  // each time the user interacts with the board, bfs is run to check if the
-  // light can propagate into other tiles on the board
-  public void propagateLight() {
+  // asks the generator for a spanning tree over the board, filling in the
+  // given arrays of width * height - 1 edges, and keeps its edges in the mst,
+  // ready for boardK to wire up, if the board is made of GamePieces
+  void generate(int[] from, int[] to) {
     int numTiles = this.width * this.height;
-    ArrayList<GamePiece> worklist = new ArrayList<GamePiece>();
-    ArrayList<GamePiece> seen = new ArrayList<GamePiece>();
-    GamePiece s = this.board.get(this.powerCol).get(this.powerRow);
-    worklist.add(s);
-    while (!worklist.isEmpty()) {
-      GamePiece next = worklist.remove(0);
-      if (next.powered || next.powerStation) {
-        next.tileImage(60, 5, Color.YELLOW, next.powerStation);
-      }
-      if (seen.contains(next)) {
-        // do nothing
-      }
-      else {
-        if (next.left && next.col > 0) {
-          GamePiece neighbor = this.board.get(next.col - 1).get(next.row);
-          if (neighbor.right) {
-            neighbor.powered = true;
-            worklist.add(neighbor);
-          }
-        }
-        if (next.right && next.col < this.width - 1) {
-          GamePiece neighbor = this.board.get(next.col + 1).get(next.row);
-          if (neighbor.left) {
-            neighbor.powered = true;
-            worklist.add(neighbor);
-          }
-        }
-        if (next.top && next.row > 0) {
-          GamePiece neighbor = this.board.get(next.col).get(next.row - 1);
-          if (neighbor.bottom) {
-            neighbor.powered = true;
-            worklist.add(neighbor);
-          }
-        }
-        if (next.bottom && next.row < this.height - 1) {
-          GamePiece neighbor = this.board.get(next.col).get(next.row + 1);
-          if (neighbor.top) {
-            neighbor.powered = true;
-            worklist.add(neighbor);
-          }
-        }
-        seen.add(next);
+    this.generator.spanningTree(this.width, this.height, this.rand, from, to);
+    this.mst = new ArrayList<Edge>();
+    if (this.packed == null) {
+      for (int i = 0; i < numTiles - 1; i++) {
+        this.mst.add(new Edge(this.nodes.get(from[i]), this.nodes.get(to[i]), i));
       }
     }
-    if (seen.size() == numTiles) {
+    // worked out once per board, not on every frame
+    this.radius = PowerRadius.radiusOf(numTiles, from, to);
+    if (this.core.reach != null) {
+      this.core.reach.setRadius(this.radius);
+    }
+  }
+
+  // lights the board from scratch, starting at the power station
+  // later rotations only update the tiles whose power actually changes
+  public void propagateLight() {
+    long start = Metrics.now();
+    long visited = this.core.power.visited;
+    this.core.relight();
+    if (this.solved()) {
       this.win = true;
     }
+    if (Metrics.ENABLED) {
+      Metrics.lap(Metrics.propagations, start);
+      Metrics.visited.record(this.core.power.visited - visited);
+    }
+  }
+
+  // makes a new board from a new spanning tree and scrambles it, timing every
+  // phase when metrics are on; a packed board is wired straight from the tree
+  void newBoard() {
+    long start = Metrics.now();
+    if (this.packed == null) {
+      this.board = this.makeBoard();
+    }
+    else {
+      this.packed.clear();
+    }
+    long made = Metrics.lap(Metrics.tiles, start);
+    int[] from = new int[this.width * this.height - 1];
+    int[] to = new int[this.width * this.height - 1];
+    this.generate(from, to);
+    long generated = Metrics.lap(Metrics.trees, made);
+    if (this.packed == null) {
+      this.boardK();
+    }
+    else {
+      for (int i = 0; i < from.length; i++) {
+        this.packed.connect(from[i], to[i]);
+      }
+    }
+    long wired = Metrics.lap(Metrics.wiring, generated);
+    this.randomize();
+    Metrics.lap(Metrics.scrambling, wired);
+    Metrics.board(this.width, this.height);
   }
 
   // to randomly rotate tiles at the start of the game
   public void randomize() {
+    if (this.packed != null) {
+      this.packed.randomize(this.rand);
+      this.core.reset(this.core.station);
+      return;
+    }
     int random = this.rand.nextInt(4);
     for (int w = 0; w < width; w++) {
       for (int h = 0; h < height; h++) {
@@ -299,27 +685,19 @@ class LightEmAll extends World {
         random = this.rand.nextInt(4);
       }
     }
+    this.core.reset(this.core.station);
   }
 
   // generates edges to represent each tile and generates a random edge weight
   // value
   // finally, sorts all of the edge weights from lowest to greatest value
   void generateEdge() {
-    int val = height * width;
-    for (int w = 0; w < this.width; w++) {
-      for (int h = 0; h < this.height; h++) {
-        GamePiece tile = board.get(w).get(h);
-        if (h < height - 1) {
-          Edge e = new Edge(tile, board.get(w).get(h + 1), this.rand.nextInt(val));
-          mst.add(e);
-        }
-        if (w < width - 1) {
-          Edge e = new Edge(tile, board.get(w + 1).get(h), this.rand.nextInt(val));
-          mst.add(e);
-        }
-      }
-    }
-    mst.sort(new CompareEdge());
+    KruskalGenerator edges = new KruskalGenerator();
+    edges.generateEdge(this.width, this.height, this.rand);
+    this.edgeFrom = edges.edgeFrom;
+    this.edgeTo = edges.edgeTo;
+    this.edgeWeight = edges.edgeWeight;
+    this.edgeCount = edges.edgeCount;
   }
 
   // for all the edges in the mst, set the gamepiece wire values depending on
@@ -352,18 +730,99 @@ class LightEmAll extends World {
   // with it
   public GamePiece find(HashMap<GamePiece, GamePiece> map, GamePiece from) {
     GamePiece fromEdge = map.get(from);
-    if (from == (fromEdge)) {
-      return fromEdge;
-    }
-    else {
-      return find(map, fromEdge);
+    while (from != fromEdge) {
+      from = fromEdge;
+      fromEdge = map.get(from);
     }
+    return fromEdge;
   }
 
   // combines the given GamePiece edges into one tree in the HashMap
   void union(HashMap<GamePiece, GamePiece> map, GamePiece fromEdge, GamePiece toEdge) {
     map.put(find(map, fromEdge), find(map, toEdge));
   }
+
+  // packs the current state of the board into one byte per tile
+  PackedBoard pack() {
+    if (this.packed != null) {
+      return this.packed.copy();
+    }
+    return new PackedBoard(this.board);
+  }
+
+  // the number of columns on the board
+  public int width() {
+    return this.width;
+  }
+
+  // the number of rows on the board
+  public int height() {
+    return this.height;
+  }
+
+  // the connector bits of the tile at the given index
+  public int mask(int index) {
+    if (this.packed != null) {
+      return this.packed.mask(index);
+    }
+    return this.board.get(index / this.height).get(index % this.height).mask();
+  }
+
+  // records whether the tile at the given index is connected to the power
+  // station
+  public void setPowered(int index, boolean powered) {
+    if (this.packed != null) {
+      if (this.packed.isPowered(index) != powered) {
+        this.pyramid.add(index / this.height, index % this.height, powered ? 1 : -1);
+        this.packed.setPowered(index, powered);
+      }
+      this.changed(index);
+      return;
+    }
+    this.board.get(index / this.height).get(index % this.height).powered = powered;
+  }
+
+  // is the tile at the given index powered?
+  public boolean isPowered(int index) {
+    if (this.packed != null) {
+      return this.packed.isPowered(index);
+    }
+    return this.board.get(index / this.height).get(index % this.height).powered;
+  }
+
+  // does the tile at the given index hold the power station?
+  public boolean isStation(int index) {
+    if (this.packed != null) {
+      return this.packed.isStation(index);
+    }
+    return this.board.get(index / this.height).get(index % this.height).powerStation;
+  }
+
+  // rotates the tile at the given index in a clockwise direction
+  public void rotate(int index) {
+    if (this.packed != null) {
+      this.packed.rotate(index);
+    }
+    else {
+      this.board.get(index / this.height).get(index % this.height).rotate();
+    }
+    this.changed(index);
+  }
+
+  // moves the power station from one tile to another
+  public void moveStation(int from, int to) {
+    if (this.packed != null) {
+      this.packed.moveStation(from, to);
+    }
+    else {
+      this.board.get(from / this.height).get(from % this.height).powerStation = false;
+      this.board.get(to / this.height).get(to % this.height).powerStation = true;
+    }
+    this.powerCol = to / this.height;
+    this.powerRow = to % this.height;
+    this.changed(from);
+    this.changed(to);
+  }
 }
 
 // represents an Edge
@@ -426,31 +885,23 @@ class GamePiece {
   // - wireColor: the Color to use for rendering wires on this
   // - hasPowerStation: if true, draws a fancy star on this tile to represent the
   // power station
-  //
+  // images are shared between all pieces with the same look, see TileImageCache
   WorldImage tileImage(int size, int wireWidth, Color wireColor, boolean hasPowerStation) {
-    // Start tile image off as a blue square with a wire-width square in the middle,
-    // to make image "cleaner" (will look strange if tile has no wire, but that
-    // can't be)
-    WorldImage image = new OverlayImage(
-        new RectangleImage(wireWidth, wireWidth, OutlineMode.SOLID, wireColor),
-        new RectangleImage(size, size, OutlineMode.SOLID, Color.DARK_GRAY));
-    WorldImage vWire = new RectangleImage(wireWidth, (size + 1) / 2, OutlineMode.SOLID, wireColor);
-    WorldImage hWire = new RectangleImage((size + 1) / 2, wireWidth, OutlineMode.SOLID, wireColor);
-    if (this.top)
-      image = new OverlayOffsetAlign(AlignModeX.CENTER, AlignModeY.TOP, vWire, 0, 0, image);
-    if (this.right)
-      image = new OverlayOffsetAlign(AlignModeX.RIGHT, AlignModeY.MIDDLE, hWire, 0, 0, image);
-    if (this.bottom)
-      image = new OverlayOffsetAlign(AlignModeX.CENTER, AlignModeY.BOTTOM, vWire, 0, 0, image);
-    if (this.left)
-      image = new OverlayOffsetAlign(AlignModeX.LEFT, AlignModeY.MIDDLE, hWire, 0, 0, image);
-    if (hasPowerStation) {
-      image = new OverlayImage(
-          new OverlayImage(new StarImage(size / 3, 7, OutlineMode.OUTLINE, new Color(255, 128, 0)),
-              new StarImage(size / 3, 7, OutlineMode.SOLID, new Color(0, 255, 255))),
-          image);
-    }
-    return image;
+    return TileImageCache.of(size, wireWidth).image(this.mask(), wireColor, hasPowerStation);
+  }
+
+  // the connector bits of this piece, as used by TileGrid
+  int mask() {
+    return (this.top ? TileGrid.TOP : 0) | (this.right ? TileGrid.RIGHT : 0)
+        | (this.bottom ? TileGrid.BOTTOM : 0) | (this.left ? TileGrid.LEFT : 0);
+  }
+
+  // replaces the connectors of this piece with the given bits
+  void setMask(int mask) {
+    this.top = (mask & TileGrid.TOP) != 0;
+    this.right = (mask & TileGrid.RIGHT) != 0;
+    this.bottom = (mask & TileGrid.BOTTOM) != 0;
+    this.left = (mask & TileGrid.LEFT) != 0;
   }
 
   // when called, rotates the tile in a clockwise direction
@@ -752,23 +1203,21 @@ class ExamplesGame {
   void testGenerateEdge(Tester t) {
     this.initConditions();
     this.mini2.generateEdge();
-    GamePiece c1 = this.mini2.board.get(0).get(0); // 6
-    GamePiece c2 = this.mini2.board.get(1).get(0); // 7
-    GamePiece c3 = this.mini2.board.get(0).get(1); // 3
-    GamePiece c4 = this.mini2.board.get(1).get(1); // 4
-    Edge e13 = new Edge(c3, c4, 0);
-    Edge e14 = new Edge(c1, c2, 1);
-    Edge e15 = new Edge(c3, c4, 1);
-    Edge e16 = new Edge(c2, c4, 1);
-    Edge e17 = new Edge(c1, c3, 2);
-    Edge e18 = new Edge(c1, c2, 2);
-    Edge e19 = new Edge(c1, c3, 2);
-    a11 = new ArrayList<Edge>(Arrays.asList(e13, e14, e15, e16, e17, e18, e19));
-    // c3 = gamepiece;3
-    // c4 = gp;4
-    // c1 = gp;8
-    // c2 = gp;14
-    t.checkExpect(this.mini2.mst, a11);
+    // tiles are numbered col * height + row
+    // 0 = (0, 0), 1 = (0, 1), 2 = (1, 0), 3 = (1, 1)
+    t.checkExpect(this.mini2.edgeCount, 4);
+    t.checkExpect(this.mini2.edgeFrom, new int[] { 0, 1, 2, 0 });
+    t.checkExpect(this.mini2.edgeTo, new int[] { 2, 3, 3, 1 });
+    t.checkExpect(this.mini2.edgeWeight, new int[] { 1, 1, 1, 2 });
+    // weights are sorted from lowest to greatest on a bigger board too
+    LightEmAll big = new LightEmAll(30, 20, new Random(4));
+    big.generateEdge();
+    t.checkExpect(big.edgeCount, 29 * 20 + 30 * 19);
+    boolean sorted = true;
+    for (int i = 1; i < big.edgeCount; i++) {
+      sorted = sorted && big.edgeWeight[i - 1] <= big.edgeWeight[i];
+    }
+    t.checkExpect(sorted, true);
   }
 
   // tests that the tile that is clicked on is rotated
@@ -936,6 +1385,1365 @@ class ExamplesGame {
     t.checkExpect(this.mini3.board.get(2).get(2).powered, false);
   }
 
+  // checks that updating the power after a single rotation lights exactly the
+  // same tiles as lighting the whole board from scratch
+  void testIncrementalPower(Tester t) {
+    LightEmAll game = new LightEmAll(8, 8, new Random(7));
+    Random clicks = new Random(3);
+    game.propagateLight();
+    for (int i = 0; i < 300; i++) {
+      game.onMouseClicked(new Posn(clicks.nextInt(8 * 60), clicks.nextInt(8 * 60)));
+      boolean[] incremental = new boolean[64];
+      for (int c = 0; c < 8; c++) {
+        for (int r = 0; r < 8; r++) {
+          incremental[c * 8 + r] = game.board.get(c).get(r).powered;
+        }
+      }
+      int count = game.core.power.poweredCount;
+      game.propagateLight();
+      for (int c = 0; c < 8; c++) {
+        for (int r = 0; r < 8; r++) {
+          t.checkExpect(game.board.get(c).get(r).powered, incremental[c * 8 + r]);
+        }
+      }
+      t.checkExpect(game.core.power.poweredCount, count);
+    }
+  }
+
+  // checks that the running count of powered tiles decides the win
+  void testPowerGridWin(Tester t) {
+    LightEmAll game = new LightEmAll(2, 2, new Random(20));
+    game.propagateLight();
+    t.checkExpect(game.core.power.allPowered(), game.win);
+    // +---+---+
+    // | --|-- |
+    // +-|-+-|-+
+    // | --|-- |
+    // +---+---+
+    game.board.get(0).get(0).right = true;
+    game.board.get(0).get(0).bottom = true;
+    game.board.get(0).get(0).left = false;
+    game.board.get(0).get(0).top = false;
+    game.board.get(1).get(0).left = true;
+    game.board.get(1).get(0).bottom = true;
+    game.board.get(1).get(0).right = false;
+    game.board.get(1).get(0).top = false;
+    game.board.get(0).get(1).top = true;
+    game.board.get(0).get(1).left = false;
+    game.board.get(0).get(1).right = false;
+    game.board.get(0).get(1).bottom = false;
+    game.board.get(1).get(1).top = true;
+    game.board.get(1).get(1).left = false;
+    game.board.get(1).get(1).right = false;
+    game.board.get(1).get(1).bottom = false;
+    game.propagateLight();
+    t.checkExpect(game.core.power.poweredCount, 4);
+    t.checkExpect(game.win, true);
+    // rotating the top right corner cuts the bottom right corner off of it
+    game.onMouseClicked(new Posn(90, 30));
+    t.checkExpect(game.core.power.poweredCount, 3);
+    t.checkExpect(game.board.get(1).get(1).powered, false);
+    t.checkExpect(game.core.power.isPowered(1 * 2 + 0), true);
+    t.checkExpect(game.core.power.isPowered(1 * 2 + 1), false);
+    // rotating it back around lights it up again
+    game.onMouseClicked(new Posn(90, 30));
+    game.onMouseClicked(new Posn(90, 30));
+    game.onMouseClicked(new Posn(90, 30));
+    t.checkExpect(game.core.power.poweredCount, 4);
+    t.checkExpect(game.board.get(1).get(1).powered, true);
+  }
+
+  // checks that a board survives being packed into bytes and unpacked again
+  void testPackedBoard(Tester t) {
+    this.initConditions();
+    PackedBoard packed = this.mini3.pack();
+    t.checkExpect(packed.width, 3);
+    t.checkExpect(packed.height, 3);
+    t.checkExpect(packed.cells.length, 9);
+    t.checkExpect(packed.isStation(0), true);
+    t.checkExpect(packed.isStation(packed.index(1, 1)), false);
+    t.checkExpect(packed.mask(packed.index(1, 0)), this.mini3.board.get(1).get(0).mask());
+    t.checkExpect(packed.unpack(), this.mini3.board);
+    t.checkExpect(packed.piece(2, 1), this.mini3.board.get(2).get(1));
+    // rotating a packed tile matches rotating the GamePiece
+    for (int i = 0; i < 4; i++) {
+      packed.rotate(packed.index(1, 2));
+      this.mini3.board.get(1).get(2).rotate();
+      t.checkExpect(packed.mask(packed.index(1, 2)), this.mini3.board.get(1).get(2).mask());
+    }
+    t.checkExpect(PackedBoard.rotateMask(TileGrid.LEFT), TileGrid.TOP);
+    t.checkExpect(PackedBoard.rotateMask(TileGrid.TOP | TileGrid.RIGHT),
+        TileGrid.RIGHT | TileGrid.BOTTOM);
+  }
+
+  // checks that the power engine lights the same tiles on a packed board
+  void testPackedBoardPower(Tester t) {
+    LightEmAll game = new LightEmAll(6, 5, new Random(11));
+    PackedBoard packed = game.pack();
+    PowerGrid grid = new PowerGrid(packed);
+    game.propagateLight();
+    grid.relight(0);
+    t.checkExpect(grid.poweredCount, game.core.power.poweredCount);
+    for (int c = 0; c < 6; c++) {
+      for (int r = 0; r < 5; r++) {
+        t.checkExpect(packed.isPowered(packed.index(c, r)), game.board.get(c).get(r).powered);
+      }
+    }
+    // wiring two tiles together sets the facing connectors
+    PackedBoard empty = new PackedBoard(2, 2);
+    empty.connect(0, 2);
+    empty.connect(2, 3);
+    t.checkExpect(empty.mask(0), TileGrid.RIGHT);
+    t.checkExpect(empty.mask(2), TileGrid.LEFT | TileGrid.BOTTOM);
+    t.checkExpect(empty.mask(3), TileGrid.TOP);
+  }
+
+  // test the int-array find and union used by kruskal
+  void testDisjointSet(Tester t) {
+    DisjointSet sets = new DisjointSet(5);
+    t.checkExpect(sets.count, 5);
+    t.checkExpect(sets.find(3), 3);
+    t.checkExpect(sets.union(0, 1), true);
+    t.checkExpect(sets.union(1, 0), false);
+    t.checkExpect(sets.find(0), sets.find(1));
+    t.checkExpect(sets.union(2, 3), true);
+    t.checkExpect(sets.union(3, 1), true);
+    t.checkExpect(sets.sizeOf(2), 4);
+    t.checkExpect(sets.find(0), sets.find(3));
+    t.checkExpect(sets.find(4), 4);
+    t.checkExpect(sets.count, 2);
+    sets.reset();
+    t.checkExpect(sets.count, 5);
+    t.checkExpect(sets.find(3), 3);
+    // a long chain does not overflow the stack
+    DisjointSet chain = new DisjointSet(1000000);
+    for (int i = 1; i < 1000000; i++) {
+      chain.parent[i] = i - 1;
+    }
+    t.checkExpect(chain.find(999999), 0);
+    t.checkExpect(chain.parent[999999] < 999998, true);
+  }
+
+  // checks that the given edges form a spanning tree over a board of the given
+  // size, only ever joining adjacent tiles
+  boolean isSpanningTree(int width, int height, int[] from, int[] to) {
+    DisjointSet sets = new DisjointSet(width * height);
+    for (int i = 0; i < width * height - 1; i++) {
+      int diff = Math.abs(from[i] - to[i]);
+      boolean adjacent = diff == height
+          || diff == 1 && Math.min(from[i], to[i]) % height != height - 1;
+      if (!adjacent || !sets.union(from[i], to[i])) {
+        return false;
+      }
+    }
+    return sets.count == 1;
+  }
+
+  // checks that every generator makes a spanning tree, whatever the board's
+  // shape
+  void testGenerators(Tester t) {
+    BoardGenerator[] generators = new BoardGenerator[] { new KruskalGenerator(),
+        new WilsonGenerator(), new DfsGenerator(), new PrimGenerator(), new EllerGenerator() };
+    int[][] sizes = new int[][] { { 1, 1 }, { 1, 7 }, { 7, 1 }, { 2, 2 }, { 9, 4 }, { 4, 9 },
+        { 25, 25 } };
+    for (BoardGenerator gen : generators) {
+      for (int[] size : sizes) {
+        for (int seed = 0; seed < 5; seed++) {
+          int[] from = new int[size[0] * size[1] - 1];
+          int[] to = new int[size[0] * size[1] - 1];
+          gen.spanningTree(size[0], size[1], new Random(seed), from, to);
+          t.checkExpect(this.isSpanningTree(size[0], size[1], from, to), true);
+        }
+      }
+    }
+    // the same seed makes the same tree
+    int[] from1 = new int[48];
+    int[] to1 = new int[48];
+    int[] from2 = new int[48];
+    int[] to2 = new int[48];
+    new EllerGenerator().spanningTree(7, 7, new Random(5), from1, to1);
+    new EllerGenerator().spanningTree(7, 7, new Random(5), from2, to2);
+    t.checkExpect(from1, from2);
+    t.checkExpect(to1, to2);
+  }
+
+  // checks that a board can be built from any generator, and that kruskal
+  // is still the default
+  void testGeneratorBoards(Tester t) {
+    this.initConditions();
+    LightEmAll kruskal = new LightEmAll(2, 2, new Random(20), new KruskalGenerator());
+    t.checkExpect(kruskal.board, this.mini2.board);
+    LightEmAll wilson = new LightEmAll(6, 5, new Random(3), new WilsonGenerator());
+    int connectors = 0;
+    for (GamePiece gp : wilson.nodes) {
+      connectors += Integer.bitCount(gp.mask());
+    }
+    // every edge of the tree shows up as two connectors
+    t.checkExpect(connectors, 2 * (6 * 5 - 1));
+    t.checkExpect(wilson.mst.size(), 6 * 5 - 1);
+    wilson.onKeyEvent("a");
+    t.checkExpect(wilson.generator instanceof WilsonGenerator, true);
+    t.checkExpect(wilson.mst.size(), 6 * 5 - 1);
+  }
+
+  // checks that streaming a board row by row gives the same board as
+  // generating it all at once
+  void testStreamingGenerator(Tester t) {
+    EllerGenerator eller = new EllerGenerator();
+    PackedBoard streamed = new PackedBoard(9, 6);
+    eller.stream(9, 6, new Random(8), new PackedRowSink(streamed));
+    LightEmAll whole = new LightEmAll(9, 6, new Random(8), new EllerGenerator());
+    // undo the scrambling of the whole board by rewiring it from its tree
+    for (GamePiece gp : whole.nodes) {
+      gp.left = false;
+      gp.right = false;
+      gp.top = false;
+      gp.bottom = false;
+    }
+    whole.boardK();
+    for (int c = 0; c < 9; c++) {
+      for (int r = 0; r < 6; r++) {
+        t.checkExpect(streamed.mask(streamed.index(c, r)), whole.board.get(c).get(r).mask());
+      }
+    }
+    // rows are written out as nibbles, two tiles per byte
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    NibbleRowWriter writer = new NibbleRowWriter(bytes);
+    eller.stream(9, 6, new Random(8), writer);
+    writer.finish();
+    byte[] written = bytes.toByteArray();
+    t.checkExpect(written.length, 27);
+    t.checkExpect(writer.written, 54L);
+    for (int i = 0; i < 54; i++) {
+      int nibble = (written[i / 2] >> (i % 2 * 4)) & 15;
+      t.checkExpect(nibble, streamed.mask(streamed.index(i % 9, i / 9)));
+    }
+    // scrambling keeps the number of connectors of every tile
+    PackedBoard scrambled = new PackedBoard(9, 6);
+    eller.stream(9, 6, new Random(8),
+        new ScramblingSink(new PackedRowSink(scrambled), new Random(1)));
+    for (int i = 0; i < 54; i++) {
+      t.checkExpect(Integer.bitCount(scrambled.mask(i)), Integer.bitCount(streamed.mask(i)));
+    }
+  }
+
+  // checks that tile images are built once and shared
+  void testTileImageCache(Tester t) {
+    this.initConditions();
+    TileImageCache cache = TileImageCache.of(60, 5);
+    t.checkExpect(TileImageCache.of(60, 5) == cache, true);
+    t.checkExpect(TileImageCache.of(30, 5) == cache, false);
+    GamePiece gp = this.mini3.board.get(1).get(0);
+    t.checkExpect(gp.tileImage(60, 5, Color.YELLOW, false) == gp.tileImage(60, 5, Color.YELLOW,
+        false), true);
+    t.checkExpect(gp.tileImage(60, 5, Color.YELLOW, false),
+        TileImageCache.draw(gp.mask(), 60, 5, Color.YELLOW, false));
+    t.checkExpect(gp.tileImage(60, 5, Color.LIGHT_GRAY, true),
+        TileImageCache.draw(gp.mask(), 60, 5, Color.LIGHT_GRAY, true));
+    t.checkExpect(cache.image(gp.mask(), Color.YELLOW, true) == cache.images(Color.YELLOW)[gp
+        .mask() + 16], true);
+    // pieces that look the same share an image
+    GamePiece same = new GamePiece(2, 2, gp.left, gp.right, gp.top, gp.bottom, false, true);
+    t.checkExpect(same.tileImage(60, 5, Color.YELLOW, false) == gp.tileImage(60, 5, Color.YELLOW,
+        false), true);
+    // colors other than the usual two are built when first asked for
+    t.checkExpect(cache.images.containsKey(Color.RED), false);
+    cache.image(3, Color.RED, false);
+    t.checkExpect(cache.images.get(Color.RED).length, 32);
+  }
+
+  // checks that big boards only draw the tiles that changed since the last
+  // frame
+  void testBoardRaster(Tester t) {
+    this.initConditions();
+    t.checkExpect(this.mini3.raster, null);
+    LightEmAll game = new LightEmAll(10, 10, new Random(2));
+    t.checkExpect(game.raster.moved, true);
+    game.propagateLight();
+    game.makeScene();
+    // only the tiles in view are drawn
+    for (int c = 0; c < 9; c++) {
+      for (int r = 0; r < 9; r++) {
+        t.checkExpect(game.raster.drawn[c * 10 + r], (byte) BoardRaster.lookOf(game, c * 10 + r));
+      }
+    }
+    t.checkExpect(game.raster.drawn[9 * 10 + 3], (byte) 0);
+    // nothing looks different, so nothing is drawn
+    t.checkExpect(game.raster.flush(game.packed), 0);
+    t.checkExpect(game.raster.dirtyCount, 0);
+    // a click marks the rotated tile and every tile whose power changed
+    game.propagateLight();
+    game.raster.flush(game.packed);
+    game.onMouseClicked(new Posn(5 * 60 + 10, 4 * 60 + 10));
+    t.checkExpect(game.raster.isDirty[5 * 10 + 4], true);
+    t.checkExpect(game.raster.dirtyCount <= 1 + game.core.power.size(), true);
+    int redrawn = game.raster.flush(game.packed);
+    t.checkExpect(redrawn >= 1, true);
+    for (int c = 0; c < 9; c++) {
+      for (int r = 0; r < 9; r++) {
+        t.checkExpect(game.raster.drawn[c * 10 + r], (byte) BoardRaster.lookOf(game, c * 10 + r));
+      }
+    }
+    // panning draws the whole view again
+    game.onKeyEvent("l");
+    t.checkExpect(game.raster.flush(game.packed), 9 * 9);
+    t.checkExpect(game.raster.drawn[9 * 10 + 3], (byte) BoardRaster.lookOf(game, 9 * 10 + 3));
+    // looks are painted with a dark background and the station in the middle
+    t.checkExpect(game.raster.looks[0][0], Color.DARK_GRAY);
+    t.checkExpect(game.raster.looks[16 | TileGrid.TOP][2 * 60 + 30], Color.YELLOW);
+    t.checkExpect(game.raster.looks[TileGrid.TOP][2 * 60 + 30], Color.LIGHT_GRAY);
+    t.checkExpect(game.raster.looks[TileGrid.TOP][58 * 60 + 30], Color.DARK_GRAY);
+    t.checkExpect(game.raster.looks[48][30 * 60 + 30], new Color(0, 255, 255));
+  }
+
+  // checks that the camera maps between the screen and the board
+  void testCamera(Tester t) {
+    Camera cam = new Camera(20, 10, 500, 500);
+    t.checkExpect(cam.firstCol(), 0);
+    t.checkExpect(cam.lastCol(), 8);
+    t.checkExpect(cam.lastRow(), 8);
+    t.checkExpect(cam.tileAt(30, 90), 0 * 10 + 1);
+    t.checkExpect(cam.tileAt(-5, 90), -1);
+    cam.pan(100, 100);
+    t.checkExpect(cam.x, 100);
+    t.checkExpect(cam.y, 100);
+    t.checkExpect(cam.firstCol(), 1);
+    t.checkExpect(cam.lastCol(), 9);
+    t.checkExpect(cam.screenX(2), 20);
+    t.checkExpect(cam.tileAt(30, 30), 2 * 10 + 2);
+    // the view never goes past the edge of the board
+    cam.pan(5000, 5000);
+    t.checkExpect(cam.x, 20 * 60 - 500);
+    t.checkExpect(cam.y, 10 * 60 - 500);
+    t.checkExpect(cam.lastCol(), 19);
+    cam.pan(-5000, 0);
+    t.checkExpect(cam.x, 0);
+    // zooming out keeps the middle of the view in place, as far as it can
+    cam.pan(400, 0);
+    cam.zoom(30);
+    t.checkExpect(cam.tileSize, 30);
+    t.checkExpect(cam.wireWidth(), 2);
+    t.checkExpect(cam.x, (400 + 250) / 2 - 250);
+    t.checkExpect(cam.y, 0);
+    t.checkExpect(cam.lastCol(), (75 + 499) / 30);
+    cam.zoom(1);
+    t.checkExpect(cam.tileSize, Camera.MIN_TILE_SIZE);
+    t.checkExpect(cam.x, 0);
+    t.checkExpect(cam.y, 0);
+    cam.zoom(1000);
+    t.checkExpect(cam.tileSize, Camera.MAX_TILE_SIZE);
+    // a board that fits in the view is never zoomed out past tiles
+    cam.zoom(8);
+    cam.zoomOut();
+    t.checkExpect(cam.lod(), false);
+    // a big board is zoomed out to blocks of tiles until it fits
+    Camera far = new Camera(1000, 600, 500, 500);
+    far.zoom(8);
+    far.zoomOut();
+    t.checkExpect(far.lod(), true);
+    t.checkExpect(far.level, 0);
+    t.checkExpect(far.tileSize, Camera.LOD_CELL);
+    far.zoomOut();
+    far.zoomOut();
+    far.zoomOut();
+    t.checkExpect(far.level, 3);
+    // 1000 tiles at 4 pixels per 8 tiles is exactly 500 pixels
+    t.checkExpect(far.fits(), true);
+    far.zoomOut();
+    t.checkExpect(far.level, 3);
+    t.checkExpect(far.lastCol(), 999);
+    t.checkExpect(far.tileAt(499, 0), 998 * 600);
+    t.checkExpect(far.screenX(16), 8);
+    far.zoomIn();
+    far.zoomIn();
+    far.zoomIn();
+    far.zoomIn();
+    t.checkExpect(far.lod(), false);
+    t.checkExpect(far.tileSize, Camera.MIN_TILE_SIZE);
+  }
+
+  // checks that powered counts are kept for every block of the board
+  void testPowerPyramid(Tester t) {
+    LightEmAll game = new LightEmAll(13, 9, new Random(6));
+    game.propagateLight();
+    for (int i = 0; i < 50; i++) {
+      game.onMouseClicked(new Posn(i * 37 % (13 * 60), i * 53 % (9 * 60)));
+    }
+    PowerPyramid pyramid = game.pyramid;
+    t.checkExpect(pyramid.levels(), 5);
+    for (int k = 1; k < pyramid.levels(); k++) {
+      int total = 0;
+      int tiles = 0;
+      for (int bc = 0; bc < pyramid.cols[k]; bc++) {
+        for (int br = 0; br < pyramid.rows[k]; br++) {
+          int expected = 0;
+          for (int c = bc << k; c < Math.min(13, bc + 1 << k); c++) {
+            for (int r = br << k; r < Math.min(9, br + 1 << k); r++) {
+              expected += game.isPowered(c * 9 + r) ? 1 : 0;
+            }
+          }
+          t.checkExpect(pyramid.count(game, k, bc, br), expected);
+          total += expected;
+          tiles += pyramid.tiles(k, bc, br);
+        }
+      }
+      t.checkExpect(total, game.core.power.poweredCount);
+      t.checkExpect(tiles, 13 * 9);
+    }
+    t.checkExpect(pyramid.tiles(4, 0, 0), 13 * 9);
+    t.checkExpect(pyramid.tiles(2, 3, 2), 1 * 1);
+  }
+
+  // checks that zoomed out boards draw one shaded block per group of tiles
+  void testLevelOfDetail(Tester t) {
+    LightEmAll game = new LightEmAll(300, 200, new Random(1));
+    game.propagateLight();
+    game.makeScene();
+    for (int i = 0; i < 4; i++) {
+      game.onKeyEvent("-");
+    }
+    t.checkExpect(game.camera.lod(), true);
+    t.checkExpect(game.camera.level, 0);
+    // the view shows 125 by 125 single tile blocks
+    t.checkExpect(game.raster.flush(game.packed), 125 * 125);
+    game.onKeyEvent("-");
+    game.onKeyEvent("-");
+    t.checkExpect(game.camera.level, 2);
+    // 300 by 200 tiles are 75 by 50 blocks of 4 by 4
+    t.checkExpect(game.raster.flush(game.packed), 75 * 50);
+    // a click on a block redraws the blocks whose tiles changed
+    game.onMouseClicked(new Posn(2, 2));
+    t.checkExpect(game.raster.flush(game.packed) >= 1, true);
+    t.checkExpect(game.raster.shades[0], new Color(64, 64, 64));
+    t.checkExpect(game.raster.shades[16], Color.YELLOW);
+  }
+
+  // checks that clicks go through the camera
+  void testCameraClicks(Tester t) {
+    LightEmAll game = new LightEmAll(12, 12, new Random(5));
+    // a board this large is kept packed, without any GamePieces, and is the
+    // same puzzle the same seed makes on its own
+    t.checkExpect(game.board.size(), 0);
+    t.checkExpect(game.nodes.size(), 0);
+    t.checkExpect(game.packed.cells.length, 144);
+    GameCore core = GameCore.generate(12, 12, new Random(5), new KruskalGenerator());
+    for (int i = 0; i < 144; i++) {
+      t.checkExpect(game.mask(i), core.grid.mask(i));
+    }
+    int before = game.mask(4 * 12 + 2);
+    game.onKeyEvent("l");
+    game.onKeyEvent("k");
+    t.checkExpect(game.camera.x, 125);
+    t.checkExpect(game.camera.y, 125);
+    // the tile at 4, 2 is now at 115, -5 on the screen
+    game.onMouseClicked(new Posn(115 + 30, 20));
+    t.checkExpect(game.mask(4 * 12 + 2), PackedBoard.rotateMask(before));
+    t.checkExpect(game.numClicks, 1);
+    game.onKeyEvent("-");
+    t.checkExpect(game.camera.tileSize, 30);
+    game.onKeyEvent("+");
+    t.checkExpect(game.camera.tileSize, 60);
+  }
+
+  // checks that the game plays the same on a packed board without a world
+  void testGameCore(Tester t) {
+    LightEmAll game = new LightEmAll(7, 6, new Random(13));
+    GameCore core = GameCore.generate(7, 6, new Random(13), new KruskalGenerator());
+    PackedBoard packed = (PackedBoard) core.grid;
+    // the same seed makes the same scrambled puzzle
+    for (int i = 0; i < 42; i++) {
+      t.checkExpect(packed.mask(i), game.mask(i));
+    }
+    t.checkExpect(core.isPowered(0), false);
+    Random clicks = new Random(4);
+    for (int i = 0; i < 200; i++) {
+      int index = clicks.nextInt(42);
+      core.rotate(index);
+      game.onMouseClicked(new Posn(index / 6 * 60 + 30, index % 6 * 60 + 30));
+      t.checkExpect(core.poweredCount(), game.core.poweredCount());
+    }
+    for (int i = 0; i < 42; i++) {
+      t.checkExpect(core.isPowered(i), game.board.get(i / 6).get(i % 6).powered);
+      t.checkExpect(packed.isPowered(i), core.isPowered(i));
+    }
+    // the station only moves along wires that meet
+    int dir = TileGrid.BOTTOM;
+    boolean linked = core.power.linked(0, dir) >= 0;
+    t.checkExpect(core.moveStation(dir), linked);
+    t.checkExpect(core.station, linked ? 1 : 0);
+    t.checkExpect(packed.isStation(core.station), true);
+    t.checkExpect(core.moveStation(TileGrid.LEFT), false);
+    // the world keeps its station row and column in step with the core
+    game.onKeyEvent("down");
+    t.checkExpect(game.powerCol * 6 + game.powerRow, game.core.station);
+    t.checkExpect(game.board.get(game.powerCol).get(game.powerRow).powerStation, true);
+  }
+
+  // checks that moving the power station keeps the lit tiles as a tree
+  // rooted at it, agreeing with lighting the board from scratch
+  void testStationMoves(Tester t) {
+    GameCore core = GameCore.generate(10, 8, new Random(21), new KruskalGenerator());
+    Solver solver = new Solver(core.grid);
+    solver.solve();
+    core.relight();
+    solver.apply(core);
+    t.checkExpect(core.allPowered(), true);
+    Random moves = new Random(3);
+    for (int i = 0; i < 300; i++) {
+      int roll = moves.nextInt(10);
+      if (roll < 6) {
+        core.moveStation(1 << moves.nextInt(4));
+      }
+      else if (roll < 8) {
+        core.rotate(moves.nextInt(80));
+      }
+      else {
+        core.teleport(moves.nextInt(80));
+      }
+      t.checkExpect(core.lit, true);
+      t.checkExpect(core.power.station, core.station);
+      t.checkExpect(core.grid.isStation(core.station), true);
+      // every lit tile leads back to the station over wires that meet
+      for (int tile = 0; tile < 80; tile++) {
+        int steps = 0;
+        int at = tile;
+        while (core.power.parent[at] >= 0 && steps <= 80) {
+          int from = core.power.parent[at];
+          boolean wired = false;
+          for (int d = TileGrid.TOP; d <= TileGrid.LEFT; d <<= 1) {
+            wired = wired || core.power.linked(at, d) == from;
+          }
+          t.checkExpect(wired, true);
+          at = from;
+          steps += 1;
+        }
+        t.checkExpect(steps <= 80, true);
+        if (core.isPowered(tile)) {
+          t.checkExpect(at, core.station);
+        }
+      }
+      int powered = core.poweredCount();
+      PackedBoard copy = new PackedBoard(10, 8);
+      for (int tile = 0; tile < 80; tile++) {
+        copy.setMask(tile, core.grid.mask(tile));
+      }
+      PowerGrid fresh = new PowerGrid(copy);
+      fresh.relight(core.station);
+      t.checkExpect(fresh.poweredCount, powered);
+    }
+  }
+
+  // checks the radius from the tree diameter, and that the tiles in reach of
+  // the power station agree with a search from scratch through every move
+  void testPowerRadius(Tester t) {
+    t.checkExpect(PowerRadius.diameter(1, new int[0], new int[0]), 0);
+    t.checkExpect(PowerRadius.diameter(4, new int[] { 0, 1, 2 }, new int[] { 1, 2, 3 }), 3);
+    t.checkExpect(PowerRadius.diameter(5, new int[] { 0, 0, 0, 3 }, new int[] { 1, 2, 3, 4 }),
+        3);
+    t.checkExpect(PowerRadius.radiusOf(4, new int[] { 0, 1, 2 }, new int[] { 1, 2, 3 }), 2);
+    // a straight wire of four tiles is only solved from the middle
+    PackedBoard line = new PackedBoard(1, 4);
+    line.connect(0, 1);
+    line.connect(1, 2);
+    line.connect(2, 3);
+    GameCore core = new GameCore(line, 0);
+    core.relight();
+    core.limitReach(2);
+    t.checkExpect(core.allPowered(), true);
+    t.checkExpect(core.solved(), false);
+    t.checkExpect(core.reach.inReach(2), true);
+    t.checkExpect(core.reach.inReach(3), false);
+    core.moveStation(TileGrid.BOTTOM);
+    t.checkExpect(core.solved(), true);
+    t.checkExpect(core.reach.shade(1), 0);
+    t.checkExpect(core.reach.shade(3), 2);
+    // a game in radius mode, on a board drawn through the raster
+    LightEmAll game = new LightEmAll(10, 10, new Random(5));
+    game.radiusMode(true);
+    t.checkExpect(game.core.reach.radius, game.radius);
+    t.checkExpect(game.raster.reach, game.core.reach);
+    Random moves = new Random(9);
+    for (int i = 0; i < 200; i++) {
+      if (moves.nextInt(5) == 0) {
+        game.onKeyEvent(new String[] { "left", "right", "up", "down", "z" }[moves.nextInt(5)]);
+      }
+      else {
+        game.onMouseClicked(new Posn(moves.nextInt(500), moves.nextInt(500)));
+      }
+      game.refreshReach();
+      PowerRadius fresh = new PowerRadius(game.core.power, game.radius);
+      fresh.compute(game.core.station);
+      for (int tile = 0; tile < 100; tile++) {
+        t.checkExpect(game.core.reach.dist[tile], fresh.dist[tile]);
+        if (game.core.reach.inReach(tile)) {
+          t.checkExpect(game.core.isPowered(tile), true);
+        }
+      }
+    }
+    game.makeScene();
+    t.checkExpect(game.raster.drawn[0], (byte) game.raster.look(game, 0));
+    // turning it off lights every connected tile again
+    game.onKeyEvent("r");
+    t.checkExpect(game.core.reach, null);
+    t.checkExpect(game.raster.reach, null);
+  }
+
+  // checks that metrics cost nothing when off, and that their report can be
+  // dumped to a file and read through JMX
+  void testMetrics(Tester t) {
+    // the tests run without -Dlightemall.metrics, so nothing is recorded
+    t.checkExpect(Metrics.ENABLED, false);
+    long frames = Metrics.scenes.count;
+    LightEmAll game = new LightEmAll(10, 10, new Random(5));
+    game.makeScene();
+    game.onMouseClicked(new Posn(30, 30));
+    t.checkExpect(Metrics.now(), 0L);
+    t.checkExpect(Metrics.scenes.count, frames);
+    t.checkExpect(game.core.power.visited, 0L);
+    LatencyHistogram counts = new LatencyHistogram();
+    counts.record(3);
+    counts.record(5);
+    t.checkExpect(counts.countSummary(), "n=2 mean=4.0 p50=3 p90=5 p99=5 max=5");
+    try {
+      Path file = Files.createTempFile("lightemall", ".metrics");
+      Files.delete(file);
+      Metrics.dump(file);
+      Metrics.dump(file);
+      String text = new String(Files.readAllBytes(file), "UTF-8");
+      t.checkExpect(text.split("lightemall metrics", -1).length, 3);
+      t.checkExpect(text.contains("scene        n="), true);
+      t.checkExpect(text.contains("visited      n="), true);
+      Files.delete(file);
+      Metrics.register();
+      Metrics.register();
+      javax.management.ObjectName name = new javax.management.ObjectName(
+          "lightemall:type=Metrics");
+      t.checkExpect(java.lang.management.ManagementFactory.getPlatformMBeanServer()
+          .getAttribute(name, "Frames"), Metrics.scenes.count);
+      t.checkExpect(java.lang.management.ManagementFactory.getPlatformMBeanServer()
+          .getAttribute(name, "Report"), Metrics.report());
+    }
+    catch (IOException | javax.management.JMException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  // checks what metrics record when they are on, in a replay run in a JVM of
+  // its own, since they are off in this one
+  void testMetricsRecorded(Tester t) {
+    LatencyHistogram counts = Metrics.visited;
+    long before = counts.count;
+    counts.record(7);
+    t.checkExpect(counts.count, before + 1);
+    t.checkExpect(Metrics.report().contains("visited      n=" + (before + 1)), true);
+    try {
+      Path file = Files.createTempFile("lightemall", ".metrics");
+      Files.delete(file);
+      Process replay = new ProcessBuilder(
+          Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+          "-Dlightemall.metrics=true", "-Dlightemall.metrics.file=" + file, "-cp",
+          System.getProperty("java.class.path"), "Replay", "-random", "12", "12", "200", "7",
+          "-scene", "10").redirectErrorStream(true).start();
+      String output = new String(replay.getInputStream().readAllBytes(), "UTF-8");
+      t.checkExpect(replay.waitFor(), 0, output);
+      String report = new String(Files.readAllBytes(file), "UTF-8");
+      Files.delete(file);
+      t.checkExpect(report.contains("board        12x12 (144 tiles)"), true, report);
+      // one board, made by the game's generator in two timed phases
+      t.checkExpect(report.contains("tree         n=1 "), true, report);
+      t.checkExpect(report.contains("edges        n=1 "), true, report);
+      t.checkExpect(report.contains("kruskal      n=1 "), true, report);
+      // a frame after every 10 events, each making the texts and the clock,
+      // and the first one the images of the tiles as well
+      t.checkExpect(report.contains("scene        n=20 "), true, report);
+      t.checkExpect(report.matches("(?s).*\nimages       n=20 mean=[0-9.]+ p50=5 .*"), true,
+          report);
+      t.checkExpect(report.contains("drawn        n=20 "), true, report);
+      t.checkExpect(report.contains("click        n=0 "), false, report);
+      t.checkExpect(report.contains("visited      n=0 "), false, report);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    catch (InterruptedException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  // checks that unions can be taken back in the opposite order
+  void testUndoableDisjointSet(Tester t) {
+    UndoableDisjointSet sets = new UndoableDisjointSet(5);
+    t.checkExpect(sets.union(0, 1), true);
+    t.checkExpect(sets.union(2, 3), true);
+    t.checkExpect(sets.union(1, 0), false);
+    t.checkExpect(sets.count(), 3);
+    t.checkExpect(sets.union(3, 0), true);
+    t.checkExpect(sets.find(2), sets.find(1));
+    t.checkExpect(sets.size[sets.find(2)], 4);
+    sets.undo(2);
+    t.checkExpect(sets.find(2) == sets.find(1), false);
+    t.checkExpect(sets.find(2), sets.find(3));
+    t.checkExpect(sets.size[sets.find(0)], 2);
+    sets.undo(0);
+    t.checkExpect(sets.count(), 5);
+    t.checkExpect(sets.find(1), 1);
+  }
+
+  // checks that the solver finds turns that light every tile of a scrambled
+  // board
+  void testSolver(Tester t) {
+    int[][] sizes = new int[][] { { 1, 1 }, { 2, 1 }, { 1, 6 }, { 5, 5 }, { 12, 9 }, { 30, 30 } };
+    for (int[] size : sizes) {
+      for (int seed = 0; seed < 4; seed++) {
+        LightEmAll game = new LightEmAll(size[0], size[1], new Random(seed));
+        Solver solver = new Solver(game);
+        t.checkExpect(solver.solve(), true);
+        int clicks = 0;
+        for (int i = 0; i < solver.size; i++) {
+          t.checkExpect(solver.rotations[i] >= 0 && solver.rotations[i] < 4, true);
+          clicks += solver.rotations[i];
+        }
+        t.checkExpect(solver.clicks, clicks);
+        game.propagateLight();
+        solver.apply(game.core);
+        t.checkExpect(game.core.allPowered(), true);
+      }
+    }
+    // a straight wire never needs more than one turn, and a cross none
+    PackedBoard cross = new PackedBoard(3, 3);
+    cross.connect(4, 1);
+    cross.connect(4, 3);
+    cross.connect(4, 5);
+    cross.connect(4, 7);
+    cross.connect(0, 1);
+    cross.connect(1, 2);
+    cross.connect(6, 7);
+    cross.connect(7, 8);
+    cross.rotate(1);
+    cross.rotate(1);
+    cross.rotate(1);
+    Solver crossSolver = new Solver(cross);
+    t.checkExpect(crossSolver.solve(), true);
+    t.checkExpect(crossSolver.rotations[4], 0);
+    t.checkExpect(crossSolver.rotations[1], 1);
+    t.checkExpect(crossSolver.clicks, 1);
+    // three dead ends in a row can never be wired together
+    PackedBoard ends = new PackedBoard(1, 3);
+    ends.setMask(0, TileGrid.BOTTOM);
+    ends.setMask(1, TileGrid.TOP);
+    ends.setMask(2, TileGrid.TOP);
+    t.checkExpect(new Solver(ends).solve(), false);
+    // and neither can a board with a loop in it
+    PackedBoard loop = new PackedBoard(2, 2);
+    loop.connect(0, 1);
+    loop.connect(1, 3);
+    loop.connect(3, 2);
+    loop.connect(2, 0);
+    t.checkExpect(new Solver(loop).solve(), false);
+    t.checkExpect(Solver.turn(TileGrid.LEFT, 1), TileGrid.TOP);
+    t.checkExpect(Solver.DISTINCT_TURNS[TileGrid.TOP | TileGrid.BOTTOM], 3);
+  }
+
+  // checks that narrowing the stripes on any number of threads leaves the
+  // solver with the same answers
+  void testParallelSolver(Tester t) {
+    ForkJoinPool[] pools = new ForkJoinPool[] { new ForkJoinPool(1), new ForkJoinPool(4) };
+    int[][] sizes = new int[][] { { 1, 1 }, { 3, 1 }, { 1, 6 }, { 7, 5 }, { 40, 30 } };
+    for (ForkJoinPool pool : pools) {
+      for (int[] size : sizes) {
+        for (int seed = 0; seed < 3; seed++) {
+          GameCore core = GameCore.generate(size[0], size[1], new Random(seed),
+              new KruskalGenerator());
+          ParallelSolver solver = new ParallelSolver(core.grid, pool);
+          t.checkExpect(solver.solve(), true);
+          t.checkExpect(solver.rounds >= 1, true);
+          core.relight();
+          solver.solver.apply(core);
+          t.checkExpect(core.allPowered(), true);
+        }
+      }
+      PackedBoard ends = new PackedBoard(3, 1);
+      ends.setMask(0, TileGrid.RIGHT);
+      ends.setMask(1, TileGrid.LEFT);
+      ends.setMask(2, TileGrid.LEFT);
+      t.checkExpect(new ParallelSolver(ends, pool).solve(), false);
+      PackedBoard loop = new PackedBoard(2, 2);
+      loop.connect(0, 1);
+      loop.connect(1, 3);
+      loop.connect(3, 2);
+      loop.connect(2, 0);
+      t.checkExpect(new ParallelSolver(loop, pool).solve(), false);
+      pool.shutdown();
+    }
+    // the stripes cover every column once
+    ParallelSolver wide = new ParallelSolver(new PackedBoard(50, 2), new ForkJoinPool(3));
+    t.checkExpect(wide.starts.length, 13);
+    t.checkExpect(wide.starts[0], 0);
+    t.checkExpect(wide.starts[12], 50);
+    wide.pool.shutdown();
+  }
+
+  // checks that a batch makes the same board for a seed as a new game does,
+  // however many workers make it
+  void testBoardBatch(Tester t) {
+    CollectingSink one = new CollectingSink();
+    CollectingSink four = new CollectingSink();
+    ForkJoinPool single = new ForkJoinPool(1);
+    ForkJoinPool many = new ForkJoinPool(4);
+    new BoardBatch(7, 5, single).generate(100, 20, one);
+    new BoardBatch(7, 5, many).generate(100, 20, four);
+    t.checkExpect(one.cells.size(), 20);
+    t.checkExpect(four.cells.size(), 20);
+    for (long seed = 100; seed < 120; seed++) {
+      t.checkExpect(Arrays.equals(one.cells.get(seed), four.cells.get(seed)), true);
+      LightEmAll game = new LightEmAll(7, 5, new Random(seed));
+      for (int i = 0; i < 35; i++) {
+        t.checkExpect(one.cells.get(seed)[i] & 15, game.mask(i));
+      }
+      t.checkExpect(one.cells.get(seed)[0] & PackedBoard.STATION, PackedBoard.STATION);
+    }
+    // a generator reused for boards of different sizes still matches
+    KruskalGenerator generator = new KruskalGenerator();
+    PackedBoard small = new PackedBoard(3, 3);
+    small.regenerate(new Random(5), generator, new int[8], new int[8]);
+    PackedBoard large = new PackedBoard(4, 6);
+    large.regenerate(new Random(6), generator, new int[23], new int[23]);
+    small.regenerate(new Random(7), generator, new int[8], new int[8]);
+    t.checkExpect(large.cells,
+        PackedBoard.generate(4, 6, new Random(6), new KruskalGenerator()).cells);
+    t.checkExpect(small.cells,
+        PackedBoard.generate(3, 3, new Random(7), new KruskalGenerator()).cells);
+    new BoardBatch(1, 1, single).generate(0, 1, one);
+    t.checkExpect(one.cells.get(0L), new byte[] { PackedBoard.STATION });
+    single.shutdown();
+    many.shutdown();
+  }
+
+  // checks that a saved board maps back to the same tiles, and that changes
+  // only reach the file when it is opened for writing
+  void testBoardFile(Tester t) {
+    LightEmAll game = new LightEmAll(7, 5, new Random(3));
+    game.numClicks = 4;
+    game.counter = 9;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    BoardFile.write(game, game.core.station, 3, game.numClicks, game.counter, bytes);
+    t.checkExpect((long) bytes.size(), BoardFile.size(7, 5));
+    t.checkExpect(BoardFile.size(7, 5), 50L);
+    Path path;
+    try {
+      path = Files.createTempFile("board", ".lea");
+      path.toFile().deleteOnExit();
+      Files.write(path, bytes.toByteArray());
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    MappedBoard mapped = MappedBoard.open(path, FileChannel.MapMode.PRIVATE);
+    t.checkExpect(mapped.width(), 7);
+    t.checkExpect(mapped.height(), 5);
+    t.checkExpect(mapped.seed, 3L);
+    t.checkExpect(mapped.clicks, 4);
+    t.checkExpect(mapped.time, 9);
+    t.checkExpect(mapped.isStation(0), true);
+    for (int i = 0; i < 35; i++) {
+      t.checkExpect(mapped.mask(i), game.mask(i));
+    }
+    // a game plays on the mapped board just as it does on the world
+    GameCore core = new GameCore(mapped, mapped.station);
+    core.relight();
+    game.propagateLight();
+    t.checkExpect(core.poweredCount(), game.core.poweredCount());
+    for (int i = 0; i < 35; i++) {
+      t.checkExpect(mapped.isPowered(i), game.isPowered(i));
+    }
+    core.rotate(12);
+    t.checkExpect(mapped.mask(12), PackedBoard.rotateMask(game.mask(12)));
+    mapped.close();
+    // a private board never changes the file
+    MappedBoard again = MappedBoard.open(path, FileChannel.MapMode.READ_WRITE);
+    t.checkExpect(again.mask(12), game.mask(12));
+    again.rotate(12);
+    again.rotate(34);
+    again.moveStation(0, 1);
+    again.progress(5, 20);
+    again.close();
+    MappedBoard saved = MappedBoard.open(path, FileChannel.MapMode.READ_ONLY);
+    t.checkExpect(saved.mask(12), PackedBoard.rotateMask(game.mask(12)));
+    t.checkExpect(saved.mask(34), PackedBoard.rotateMask(game.mask(34)));
+    t.checkExpect(saved.mask(33), game.mask(33));
+    t.checkExpect(saved.station, 1);
+    t.checkExpect(saved.clicks, 5);
+    t.checkExpect(saved.time, 20);
+    Solver solver = new Solver(saved);
+    t.checkExpect(solver.solve(), true);
+    saved.close();
+    // a streamed board is the same as one streamed into memory
+    ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+    BoardFile.stream(9, 6, 8, streamed);
+    PackedBoard packed = new PackedBoard(9, 6);
+    Random rand = new Random(8);
+    new EllerGenerator().stream(9, 6, rand, new ScramblingSink(new PackedRowSink(packed), rand));
+    byte[] written = streamed.toByteArray();
+    t.checkExpect((long) written.length, BoardFile.size(9, 6));
+    for (int i = 0; i < 54; i++) {
+      int nibble = (written[BoardFile.HEADER + i / 2] >> (i % 2 * 4)) & 15;
+      t.checkExpect(nibble, packed.mask(packed.index(i % 9, i / 9)));
+    }
+    // anything else is turned away
+    try {
+      Files.write(path, new byte[40]);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    String error = "";
+    try {
+      MappedBoard.open(path, FileChannel.MapMode.READ_ONLY);
+    }
+    catch (IllegalArgumentException e) {
+      error = e.getMessage();
+    }
+    t.checkExpect(error, "not a board file: bad magic number");
+    // and so is a power station off the board
+    byte[] offBoard = Arrays.copyOf(written, written.length);
+    java.nio.ByteBuffer.wrap(offBoard).putInt(BoardFile.STATION, 54);
+    try {
+      Files.write(path, offBoard);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    try {
+      MappedBoard.open(path, FileChannel.MapMode.READ_ONLY);
+    }
+    catch (IllegalArgumentException e) {
+      error = e.getMessage();
+    }
+    t.checkExpect(error, "not a board file: station 54 is off the 9x6 board");
+  }
+
+  // checks that a recorded game resumes just as it was left, replaying only
+  // the moves since the last snapshot
+  void testMoveJournal(Tester t) {
+    Path path;
+    try {
+      Path dir = Files.createTempDirectory("journal");
+      dir.toFile().deleteOnExit();
+      path = dir.resolve("game.log");
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    LightEmAll game = new LightEmAll(6, 5, new Random(9));
+    game.propagateLight();
+    game.record(path, 8);
+    Random clicks = new Random(2);
+    for (int i = 0; i < 27; i++) {
+      int index = clicks.nextInt(30);
+      game.onMouseClicked(new Posn(index / 5 * 60 + 30, index % 5 * 60 + 30));
+      game.onTick();
+      if (i % 5 == 0) {
+        game.onKeyEvent(i % 2 == 0 ? "down" : "right");
+      }
+    }
+    game.onKeyEvent("z");
+    game.onTick();
+    game.journal.flush();
+    LightEmAll resumed = LightEmAll.resume(path, 8);
+    t.checkExpect(resumed.journal.moves < 8, true);
+    for (int i = 0; i < 30; i++) {
+      t.checkExpect(resumed.mask(i), game.mask(i));
+      t.checkExpect(resumed.isPowered(i), game.isPowered(i));
+    }
+    t.checkExpect(resumed.core.station, game.core.station);
+    t.checkExpect(resumed.powerCol * 5 + resumed.powerRow, game.core.station);
+    t.checkExpect(resumed.numClicks, 26);
+    t.checkExpect(resumed.counter, game.counter);
+    t.checkExpect(resumed.radius, game.radius);
+    t.checkExpect(resumed.mst.size(), 0);
+    // the resumed game keeps recording, and a move cut short is dropped, as
+    // is a rotation of tile 30, off the board, and everything after it
+    resumed.onMouseClicked(new Posn(30, 30));
+    resumed.journal.flush();
+    try {
+      Files.write(path, new byte[] { 30 << 2, 0, (byte) 0x81 }, StandardOpenOption.APPEND);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    LightEmAll again = LightEmAll.resume(path, 8);
+    t.checkExpect(again.numClicks, 27);
+    t.checkExpect(again.mask(0), resumed.mask(0));
+    t.checkExpect(path.toFile().length(), again.journal.length);
+    // a new board starts over from a snapshot of its own
+    again.onKeyEvent("a");
+    again.journal.flush();
+    LightEmAll restarted = LightEmAll.resume(path, 8);
+    t.checkExpect(restarted.numClicks, 0);
+    t.checkExpect(restarted.counter, 0);
+    t.checkExpect(restarted.journal.moves, 0);
+    t.checkExpect(restarted.radius, again.radius);
+    for (int i = 0; i < 30; i++) {
+      t.checkExpect(restarted.mask(i), again.mask(i));
+    }
+    // recording again lets go of the last journal
+    MoveJournal last = restarted.journal;
+    restarted.record(path, 8);
+    t.checkExpect(last.log.isOpen(), false);
+    game.journal.close();
+    resumed.journal.close();
+    again.journal.close();
+    restarted.journal.close();
+    path.toFile().deleteOnExit();
+    path.resolveSibling("game.log.snap").toFile().deleteOnExit();
+  }
+
+  // checks that a new board, or a saved one, is lit on its own pieces after
+  // a solved board, with no tile left dark because it was lit before
+  void testRestartLighting(Tester t) {
+    for (int size = 8; size <= 12; size += 4) {
+      LightEmAll game = new LightEmAll(size, size, new Random(size));
+      game.core.relight();
+      Solver solver = new Solver(game);
+      solver.solve();
+      solver.apply(game.core);
+      game.makeScene();
+      t.checkExpect(game.core.allPowered(), true);
+      // a new board after a solved one, and a saved board over a solved one
+      game.onKeyEvent("a");
+      game.makeScene();
+      this.checkPiecesLit(t, game);
+      PackedBoard saved = new PackedBoard(size, size);
+      for (int i = 0; i < size * size; i++) {
+        saved.setMask(i, game.mask(i));
+      }
+      game.core.relight();
+      solver = new Solver(game);
+      solver.solve();
+      solver.apply(game.core);
+      game.restore(saved, 0, 0, 0);
+      this.checkPiecesLit(t, game);
+    }
+  }
+
+  // checks that every piece of the given game is powered exactly when the
+  // power engine says it is lit, and that the pyramid counts them all
+  void checkPiecesLit(Tester t, LightEmAll game) {
+    int mismatched = 0;
+    for (int i = 0; i < game.width * game.height; i++) {
+      mismatched += game.isPowered(i) == game.core.isPowered(i) ? 0 : 1;
+    }
+    t.checkExpect(mismatched, 0);
+    t.checkExpect(game.isPowered(game.core.station), true);
+    if (game.pyramid != null) {
+      int top = game.pyramid.levels() - 1;
+      t.checkExpect(game.pyramid.count(game, top, 0, 0), game.core.poweredCount());
+    }
+  }
+
+  // checks that lighting a board again only marks the tiles whose power
+  // changed, and that frames of an unchanged board do not light it again
+  void testQuietRelight(Tester t) {
+    LightEmAll game = new LightEmAll(12, 10, new Random(2));
+    game.makeScene();
+    t.checkExpect(game.core.lit, true);
+    t.checkExpect(game.raster.dirtyCount, 0);
+    int powered = game.core.poweredCount();
+    game.propagateLight();
+    t.checkExpect(game.raster.dirtyCount, 0);
+    t.checkExpect(game.core.poweredCount(), powered);
+    // a rotation that leaves every tile as lit as it was marks only itself;
+    // once solved, this board has a lit cross away from the power station
+    Solver solver = new Solver(game);
+    solver.solve();
+    solver.apply(game.core);
+    game.makeScene();
+    powered = game.core.poweredCount();
+    t.checkExpect(powered, 120);
+    PowerGrid power = game.core.power;
+    int cross = -1;
+    for (int i = 0; i < 120 && cross < 0; i++) {
+      if (power.isPowered(i) && i != game.core.station
+          && Integer.bitCount(game.mask(i)) == 4) {
+        cross = i;
+      }
+    }
+    t.checkExpect(cross >= 0, true);
+    game.core.rotate(cross);
+    t.checkExpect(game.raster.dirtyCount, 1);
+    t.checkExpect(game.core.poweredCount(), powered);
+    // the pyramid still counts every lit tile once
+    game.onKeyEvent("down");
+    game.makeScene();
+    int counted = 0;
+    for (int i = 0; i < 120; i++) {
+      counted += game.isPowered(i) ? 1 : 0;
+    }
+    t.checkExpect(counted, game.core.poweredCount());
+    int top = game.pyramid.levels() - 1;
+    t.checkExpect(game.pyramid.count(game, top, 0, 0), counted);
+  }
+
+  // checks that the connectivity index agrees with the power engine on
+  // which tiles reach the power station, through rotations and new boards
+  void testConnectivityIndex(Tester t) {
+    LightEmAll game = new LightEmAll(9, 7, new Random(5));
+    GameCore core = game.core;
+    core.relight();
+    t.checkExpect(core.componentSize(core.station), core.poweredCount());
+    Random clicks = new Random(8);
+    for (int i = 0; i < 300; i++) {
+      int index = clicks.nextInt(63);
+      if (i % 3 == 0) {
+        core.rotateBack(index);
+      }
+      else {
+        core.rotate(index);
+      }
+      ConnectivityIndex components = core.components();
+      t.checkExpect(components.componentSize(core.station), core.poweredCount());
+      t.checkExpect(components.connected(index, core.station), core.isPowered(index));
+      t.checkExpect(core.isPowered(index / 7, index % 7), core.isPowered(index));
+      t.checkExpect(components.allConnected(), core.allPowered());
+    }
+    // breaking a link only splits up the set it was in, into the same sets
+    // as building them all from scratch
+    ConnectivityIndex fresh = new ConnectivityIndex(core.power);
+    for (int i = 0; i < 300; i++) {
+      int index = clicks.nextInt(63);
+      core.rotate(index);
+      if (i % 4 == 0) {
+        core.rotate(clicks.nextInt(63));
+      }
+      fresh.rebuild();
+      t.checkExpect(core.components.stale, false);
+      for (int tile = 0; tile < 63; tile++) {
+        t.checkExpect(core.componentSize(tile), fresh.componentSize(tile));
+        t.checkExpect(core.components.connected(tile, index), fresh.connected(tile, index));
+      }
+    }
+    t.checkExpect(core.components.sets.count, fresh.sets.count);
+    // bulk changes are picked up on the next query
+    game.onKeyEvent("a");
+    game.propagateLight();
+    t.checkExpect(core.components.stale, true);
+    t.checkExpect(core.componentSize(0), core.poweredCount());
+    t.checkExpect(core.components.stale, false);
+    // and whether a tile is wired to the power station is known before the
+    // new board is lit
+    game.onKeyEvent("a");
+    t.checkExpect(core.lit, false);
+    boolean[] wired = new boolean[63];
+    for (int tile = 0; tile < 63; tile++) {
+      wired[tile] = core.isPowered(tile / 7, tile % 7);
+    }
+    game.propagateLight();
+    for (int tile = 0; tile < 63; tile++) {
+      t.checkExpect(wired[tile], core.isPowered(tile));
+    }
+    // a solved board is one set
+    Solver solver = new Solver(game);
+    solver.solve();
+    solver.apply(core);
+    t.checkExpect(core.components().allConnected(), true);
+    t.checkExpect(core.componentSize(62), 63);
+    // a tile with no links is a set of its own
+    PackedBoard empty = new PackedBoard(3, 2);
+    ConnectivityIndex lonely = new ConnectivityIndex(new PowerGrid(empty));
+    t.checkExpect(lonely.componentSize(4), 1);
+    empty.connect(0, 2);
+    empty.connect(2, 4);
+    lonely.rebuild();
+    t.checkExpect(lonely.componentSize(4), 3);
+    t.checkExpect(lonely.connected(0, 1), false);
+  }
+
+  // checks that the history forgets its oldest moves once full, and that
+  // undo and redo put the board back the way it was
+  void testMoveHistory(Tester t) {
+    MoveHistory history = new MoveHistory(3);
+    t.checkExpect(history.undo(), -1);
+    for (int i = 1; i <= 4; i++) {
+      history.push(MoveJournal.ROTATE, i);
+    }
+    t.checkExpect(history.undoable, 3);
+    t.checkExpect(MoveHistory.value(history.undo()), 4);
+    t.checkExpect(MoveHistory.value(history.undo()), 3);
+    t.checkExpect(MoveHistory.value(history.redo()), 3);
+    t.checkExpect(MoveHistory.value(history.undo()), 3);
+    t.checkExpect(MoveHistory.value(history.undo()), 2);
+    t.checkExpect(history.undo(), -1);
+    history.push(MoveJournal.STATION, 2);
+    t.checkExpect(history.redo(), -1);
+    t.checkExpect(MoveHistory.kind(history.undo()), MoveJournal.STATION);
+    LightEmAll game = new LightEmAll(6, 5, new Random(4));
+    game.propagateLight();
+    PackedBoard start = game.pack();
+    int startPowered = game.core.poweredCount();
+    Random clicks = new Random(6);
+    for (int i = 0; i < 40; i++) {
+      int index = clicks.nextInt(30);
+      game.onMouseClicked(new Posn(index / 5 * 60 + 30, index % 5 * 60 + 30));
+      if (i % 7 == 0) {
+        game.onKeyEvent(i % 2 == 0 ? "down" : "right");
+      }
+    }
+    PackedBoard end = game.pack();
+    int endStation = game.core.station;
+    for (int i = 0; i < 60; i++) {
+      game.onKeyEvent("z");
+    }
+    t.checkExpect(game.pack().cells, start.cells);
+    t.checkExpect(game.core.station, 0);
+    t.checkExpect(game.numClicks, 0);
+    game.propagateLight();
+    t.checkExpect(game.core.poweredCount(), startPowered);
+    for (int i = 0; i < 60; i++) {
+      game.onKeyEvent("y");
+    }
+    game.propagateLight();
+    t.checkExpect(game.pack().cells, end.cells);
+    t.checkExpect(game.core.station, endStation);
+    t.checkExpect(game.numClicks, 40);
+    // an undone rotation only re-lights what it changes, and agrees with
+    // lighting the board from scratch
+    game.onKeyEvent("z");
+    int powered = game.core.poweredCount();
+    game.propagateLight();
+    t.checkExpect(game.core.poweredCount(), powered);
+    game.onKeyEvent("a");
+    t.checkExpect(game.history.undoable, 0);
+  }
+
+  // checks that a traced session replays to the same board, through a file
+  // or not, and that every event is timed by its kind
+  void testReplay(Tester t) {
+    LightEmAll game = new LightEmAll(7, 6, new Random(11));
+    game.propagateLight();
+    game.trace = new MoveTrace(11, 7, 6);
+    MoveTrace made = MoveTrace.random(11, 7, 6, 300, new Random(3));
+    for (int i = 0; i < made.size; i++) {
+      if (made.kinds[i] == MoveTrace.CLICK) {
+        game.onMouseClicked(new Posn(made.xs[i], made.ys[i]));
+      }
+      else if (made.kinds[i] == MoveTrace.KEY) {
+        game.onKeyEvent(made.keys[i]);
+      }
+      else {
+        game.onTick();
+      }
+    }
+    t.checkExpect(game.trace.size, 300);
+    Replay replay = new Replay(game.trace, 50);
+    replay.run();
+    t.checkExpect(replay.game.pack().cells, game.pack().cells);
+    t.checkExpect(replay.game.numClicks, game.numClicks);
+    t.checkExpect(replay.game.counter, game.counter);
+    t.checkExpect(replay.clicks.count + replay.keys.count + replay.ticks.count, 300L);
+    t.checkExpect(replay.scenes.count, 6L);
+    Path path;
+    try {
+      path = Files.createTempFile("trace", ".txt");
+      path.toFile().deleteOnExit();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    game.trace.write(path);
+    MoveTrace read = MoveTrace.read(path);
+    t.checkExpect(read.seed, 11L);
+    t.checkExpect(read.size, 300);
+    Replay again = new Replay(read, 0);
+    again.run();
+    t.checkExpect(again.fingerprint(), replay.fingerprint());
+    t.checkExpect(again.scenes.count, 0L);
+    t.checkExpect(again.report().contains("300 events"), true);
+  }
+
+  // checks that a game traced from the start is saved with its own seed and
+  // replays to where it ended, and that tracing games never adds more than
+  // one shutdown hook
+  void testTracedSession(Tester t) {
+    Path path;
+    Path other;
+    try {
+      path = Files.createTempFile("trace", ".txt");
+      path.toFile().deleteOnExit();
+      other = Files.createTempFile("trace", ".txt");
+      other.toFile().deleteOnExit();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    MoveTrace made = MoveTrace.random(23, 7, 6, 300, new Random(3));
+    LightEmAll traced = LightEmAll.traced(7, 6, 23, path);
+    Thread saver = LightEmAll.traceSaver;
+    t.checkExpect(saver != null, true);
+    t.checkExpect(LightEmAll.tracing == traced, true);
+    traced.propagateLight();
+    for (int i = 0; i < made.size; i++) {
+      if (made.kinds[i] == MoveTrace.CLICK) {
+        traced.onMouseClicked(new Posn(made.xs[i], made.ys[i]));
+      }
+      else if (made.kinds[i] == MoveTrace.KEY) {
+        traced.onKeyEvent(made.keys[i]);
+      }
+      else {
+        traced.onTick();
+      }
+    }
+    traced.saveTrace();
+    MoveTrace saved = MoveTrace.read(path);
+    t.checkExpect(saved.seed, 23L);
+    Replay savedReplay = new Replay(saved, 0);
+    savedReplay.run();
+    t.checkExpect(savedReplay.game.pack().cells, traced.pack().cells);
+    t.checkExpect(savedReplay.game.counter, traced.counter);
+    // the hook now saves the game traced last
+    LightEmAll next = LightEmAll.traced(5, 5, 4, other);
+    t.checkExpect(LightEmAll.traceSaver == saver, true);
+    t.checkExpect(LightEmAll.tracing == next, true);
+  }
+
+  // checks that latencies are counted to within 1/16 of their value
+  void testLatencyHistogram(Tester t) {
+    LatencyHistogram hist = new LatencyHistogram();
+    t.checkExpect(hist.percentile(0.5), 0L);
+    for (long v = 1; v <= 1000; v++) {
+      hist.record(v);
+    }
+    t.checkExpect(hist.count, 1000L);
+    t.checkExpect(hist.min, 1L);
+    t.checkExpect(hist.max, 1000L);
+    t.checkExpect(hist.mean(), 500.5);
+    t.checkExpect(Math.abs(hist.percentile(0.5) - 500) <= 500 / 16, true);
+    t.checkExpect(Math.abs(hist.percentile(0.99) - 990) <= 990 / 16, true);
+    t.checkExpect(hist.percentile(1.0), 1000L);
+    // every bucket starts right after the one before it
+    for (int b = 1; b < LatencyHistogram.BUCKETS; b++) {
+      t.checkExpect(LatencyHistogram.lowestIn(b), LatencyHistogram.highestIn(b - 1) + 1);
+    }
+    t.checkExpect(LatencyHistogram.bucketOf(Long.MAX_VALUE) < LatencyHistogram.BUCKETS, true);
+    t.checkExpect(LatencyHistogram.bucketOf(31), 31);
+    LatencyHistogram other = new LatencyHistogram();
+    other.record(1000000);
+    hist.add(other);
+    t.checkExpect(hist.count, 1001L);
+    t.checkExpect(hist.max, 1000000L);
+  }
+
+  // checks that every benchmark runs and reports what it measured
+  void testBenchmarks(Tester t) {
+    Benchmarks harness = new Benchmarks(0, 0);
+    for (Benchmark bench : Benchmarks.all()) {
+      BenchmarkResult result = harness.measure(bench, 9, 8, new Random(1));
+      t.checkExpect(result.name, bench.name());
+      t.checkExpect(result.latency.count >= 1, true);
+      t.checkExpect(result.throughput() > 0, true);
+    }
+    t.checkExpect(Benchmarks.all().size(), 16);
+  }
+
   // GAMEPIECE TESTS
   // checks that the tile rotates in a clockwise direction when
   // method is called
@@ -992,7 +2800,8 @@ class ExamplesGame {
   void testKruskal(Tester t) {
     this.initConditions();
     LightEmAll mini2n = new LightEmAll(2, 2); // without running kruskal
-    t.checkExpect(mini2n.mst.size(), 4);
+    t.checkExpect(mini2n.mst.size(), 0);
+    t.checkExpect(mini2n.edgeCount, 4);
     GamePiece c1 = mini2n.board.get(0).get(0); // 6
     GamePiece c2 = mini2n.board.get(1).get(0); // 3
     GamePiece c3 = mini2n.board.get(0).get(1); // 8
@@ -1000,9 +2809,9 @@ class ExamplesGame {
     Edge e13 = new Edge(c3, c4, 0);
     Edge e14 = new Edge(c1, c3, 2);
     Edge e15 = new Edge(c1, c2, 2);
-    Edge e16 = new Edge(c2, c4, 3);
-    ArrayList<Edge> a2 = new ArrayList<Edge>(Arrays.asList(e13, e14, e15, e16));
-    t.checkExpect(mini2n.mst, a2);
+    t.checkExpect(mini2n.edgeFrom, new int[] { 1, 0, 0, 2 });
+    t.checkExpect(mini2n.edgeTo, new int[] { 3, 1, 2, 3 });
+    t.checkExpect(mini2n.edgeWeight, new int[] { 0, 2, 2, 3 });
     mini2n.kruskal();
     ArrayList<Edge> a3 = new ArrayList<Edge>(Arrays.asList(e13, e14, e15));
     // after running kruskal on the mst